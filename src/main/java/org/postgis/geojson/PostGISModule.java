@@ -3,20 +3,78 @@ package org.postgis.geojson;
 import org.postgis.*;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import org.postgis.geojson.deserializers.GeometryDeserializer;
+import org.postgis.geojson.deserializers.GeometryInterner;
 import org.postgis.geojson.serializers.GeometrySerializer;
 
 /**
  * Module for loading serializers/deserializers.
- * 
+ *
+ * The limits on deserialized geometries guard against untrusted input: once
+ * one is exceeded, parsing stops with a JsonParseException pointing at the
+ * offending location.
+ *
+ * Interning is off by default. Once enabled, geometries read again with the
+ * same type and coordinates are shared and must not be modified.
+ *
  * @author Maycon Viana Bordin <mayconbordin@gmail.com>
  */
 public class PostGISModule extends SimpleModule {
     private static final long serialVersionUID = 1L;
 
+    private final GeometryDeserializer deserializer = new GeometryDeserializer();
+
     public PostGISModule() {
         super("PostGISModule");
 
         addSerializer(Geometry.class, new GeometrySerializer());
-        addDeserializer(Geometry.class, new GeometryDeserializer());
+        addDeserializer(Geometry.class, deserializer);
+    }
+
+    /**
+     * @param maxCoordinates maximum number of positions in a geometry, collections included
+     */
+    public PostGISModule setMaxCoordinates(int maxCoordinates) {
+        deserializer.setMaxCoordinates(maxCoordinates);
+        return this;
+    }
+
+    /**
+     * @param maxDepth maximum nesting depth of geometry collections
+     */
+    public PostGISModule setMaxDepth(int maxDepth) {
+        deserializer.setMaxDepth(maxDepth);
+        return this;
+    }
+
+    /**
+     * @param maxMembers maximum number of members of a collection, multi geometry or polygon
+     */
+    public PostGISModule setMaxMembers(int maxMembers) {
+        deserializer.setMaxMembers(maxMembers);
+        return this;
+    }
+
+    /**
+     * @param maxRingSize maximum number of positions in a ring, a LineString or a MultiPoint
+     */
+    public PostGISModule setMaxRingSize(int maxRingSize) {
+        deserializer.setMaxRingSize(maxRingSize);
+        return this;
+    }
+
+    /**
+     * @param decimals number of decimals coordinates are rounded to when read
+     */
+    public PostGISModule setDecimals(int decimals) {
+        deserializer.setDecimals(decimals);
+        return this;
+    }
+
+    /**
+     * @param interner table of shared geometries, or null to disable interning
+     */
+    public PostGISModule setInterner(GeometryInterner interner) {
+        deserializer.setInterner(interner);
+        return this;
     }
 }
@@ -0,0 +1,151 @@
+package org.postgis.geojson.deserializers;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import org.postgis.geojson.util.CoordinateKernels;
+
+/**
+ * Growable buffer holding the coordinates of one geometry while its
+ * "coordinates" array is streamed.
+ *
+ * Positions are packed as x, y, z triples. For every array that is not a
+ * position the number of arrays already started one level below is kept, so
+ * that the nesting can later be turned into ring, part and polygon offsets.
+ * Levels are counted from 1, the outermost array.
+ *
+ * When hashing is enabled a hash of the coordinates and of their nesting is
+ * kept up to date as they are added, for the {@link GeometryInterner}. The
+ * nesting is hashed apart from the positions, so that rounding only has to
+ * hash the positions again.
+ */
+public class CoordinateBuffer {
+    public static final int DIMENSION = 3;
+    public static final int MAX_LEVEL = 4;
+
+    private double[] coordinates = new double[DIMENSION * 16];
+    private final int[][] starts = new int[MAX_LEVEL + 1][];
+    private final int[] counts = new int[MAX_LEVEL + 2];
+    private int vertices;
+    private int positionLevel;
+    private int maxListLevel;
+    private boolean hashing;
+    private long listHash;
+    private long positionHash;
+
+    void reset() {
+        Arrays.fill(counts, 0);
+        vertices = 0;
+        positionLevel = 0;
+        maxListLevel = 0;
+        listHash = 0;
+        positionHash = 0;
+    }
+
+    void setHashing(boolean hashing) {
+        this.hashing = hashing;
+    }
+
+    /**
+     * @return the hash of the coordinates and their nesting, if hashing is enabled
+     */
+    public long getHash() {
+        return mix(listHash, positionHash);
+    }
+
+    /**
+     * @return the level at which positions were found, or 0 if none was found
+     */
+    public int getPositionLevel() {
+        return positionLevel;
+    }
+
+    public int getMaxListLevel() {
+        return maxListLevel;
+    }
+
+    public int getVertices() {
+        return vertices;
+    }
+
+    void startList(int level) {
+        int[] levelStarts = starts[level];
+
+        if (levelStarts == null) {
+            levelStarts = starts[level] = new int[8];
+        } else if (counts[level] == levelStarts.length) {
+            levelStarts = starts[level] = Arrays.copyOf(levelStarts, levelStarts.length * 2);
+        }
+
+        levelStarts[counts[level]++] = counts[level + 1];
+        maxListLevel = Math.max(maxListLevel, level);
+
+        if (hashing) {
+            listHash = mix(mix(listHash, level), vertices);
+        }
+    }
+
+    void addPosition(int level, double x, double y, double z) {
+        int index = vertices * DIMENSION;
+
+        if (index + DIMENSION > coordinates.length) {
+            coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+        }
+
+        coordinates[index]     = x;
+        coordinates[index + 1] = y;
+        coordinates[index + 2] = z;
+
+        positionLevel = level;
+        counts[level]++;
+        vertices++;
+
+        if (hashing) {
+            positionHash = mix(positionHash, x, y, z);
+        }
+    }
+
+    private static long mix(long hash, double x, double y, double z) {
+        return mix(mix(mix(hash, Double.doubleToLongBits(x)), Double.doubleToLongBits(y)),
+                Double.doubleToLongBits(z));
+    }
+
+    private static long mix(long hash, long value) {
+        long h = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    void round(int decimals) {
+        CoordinateKernels.round(coordinates, 0, vertices, DIMENSION, decimals);
+
+        if (hashing) {
+            positionHash = 0;
+
+            for (int i = 0; i < vertices * DIMENSION; i += DIMENSION) {
+                positionHash = mix(positionHash, coordinates[i], coordinates[i + 1], coordinates[i + 2]);
+            }
+        }
+    }
+
+    public double get(int index) {
+        return coordinates[index];
+    }
+
+    public DoubleBuffer getCoordinates() {
+        return DoubleBuffer.wrap(coordinates, 0, vertices * DIMENSION);
+    }
+
+    int getOffsetCount(int level) {
+        return counts[level];
+    }
+
+    int getOffset(int level, int index) {
+        return starts[level][index];
+    }
+
+    /**
+     * @return for every array at the given level, the index of its first child
+     */
+    public int[] getOffsets(int level) {
+        return starts[level] == null ? new int[0] : Arrays.copyOf(starts[level], counts[level]);
+    }
+}
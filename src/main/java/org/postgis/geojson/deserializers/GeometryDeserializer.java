@@ -3,206 +3,372 @@ package org.postgis.geojson.deserializers;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.JsonNode;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
 import org.postgis.Geometry;
 import org.postgis.GeometryCollection;
-import org.postgis.LineString;
-import org.postgis.LinearRing;
-import org.postgis.MultiLineString;
-import org.postgis.MultiPoint;
-import org.postgis.MultiPolygon;
 import org.postgis.Point;
-import org.postgis.Polygon;
+import org.postgis.geojson.util.CoordinateKernels;
+import org.postgis.geojson.util.GeometryBuilder;
 import static org.postgis.geojson.GeometryTypes.*;
 
 /**
  * Deserializer for Geometry types.
- * 
+ *
+ * Geometries are read straight from the token stream, without building a tree,
+ * so the limits on the number of coordinates, members, ring size and nesting
+ * depth are enforced as the input is read, before the memory is spent.
+ *
+ * Coordinates can be rounded to a number of decimals as they are read, with
+ * the {@link CoordinateKernels} over the packed coordinates of each geometry.
+ *
+ * With a {@link GeometryInterner} set, geometries whose type and coordinates
+ * were already read are returned as the same, shared instance.
+ *
  * @author Maycon Viana Bordin <mayconbordin@gmail.com>
  */
 public class GeometryDeserializer extends JsonDeserializer<Geometry> {
-    
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+    public static final int DEFAULT_MAX_DEPTH = 1000;
+    public static final int FULL_PRECISION = -1;
+
+    private static final int UNKNOWN_SRID = 0;
+
+    private int maxCoordinates = UNLIMITED;
+    private int maxDepth = DEFAULT_MAX_DEPTH;
+    private int maxMembers = UNLIMITED;
+    private int maxRingSize = UNLIMITED;
+    private int decimals = FULL_PRECISION;
+    private GeometryInterner interner;
+
+    /**
+     * State of a single call to {@link #deserialize}, shared by all the
+     * geometries of a collection.
+     */
+    protected static class ParseContext {
+        protected final CoordinateBuffer coordinates = new CoordinateBuffer();
+        protected int positions;
+    }
+
     @Override
-    public Geometry deserialize(JsonParser jp, DeserializationContext dc) 
+    public Geometry deserialize(JsonParser jp, DeserializationContext dc)
             throws IOException, JsonProcessingException {
-        String fieldName;
+        ParseContext ctx = new ParseContext();
+        ctx.coordinates.setHashing(interner != null);
+        return readGeometry(jp, ctx, 1);
+    }
+
+    protected Geometry readGeometry(JsonParser jp, ParseContext ctx, int depth) throws IOException {
+        checkLimit(depth, maxDepth, "nesting depth", jp);
+
         String type = null;
-        
-        while (true) {
-            fieldName = jp.nextFieldName();
-
-            if (fieldName == null) {
-                return null;
-            } else if (fieldName.equals("type")) {
-                type = jp.nextTextValue();
+        Geometry[] geometries = null;
+        boolean hasCoordinates = false;
+        JsonToken token = jp.getCurrentToken();
+
+        if (token == JsonToken.START_OBJECT) {
+            token = jp.nextToken();
+        }
+
+        while (token == JsonToken.FIELD_NAME) {
+            String fieldName = jp.getCurrentName();
+            token = jp.nextToken();
+
+            if (fieldName.equals("type")) {
+                expect(token, JsonToken.VALUE_STRING, "type", jp);
+                type = jp.getText();
             } else if (fieldName.equals("coordinates")) {
-                JsonNode node = jp.readValueAsTree();
-                JsonNode coordinates = node.get("coordinates");
-                
-                return coordinatesToGeometry(type, coordinates, jp);
+                expect(token, JsonToken.START_ARRAY, "coordinates", jp);
+                ctx.coordinates.reset();
+                readCoordinateArray(jp, ctx, 1);
+                hasCoordinates = true;
             } else if (fieldName.equals("geometries")) {
-                JsonNode node = jp.readValueAsTree();
-                JsonNode geometries = node.get("geometries");
-                
-                return new GeometryCollection(readNodeAsGeometryArray(geometries, jp));
+                expect(token, JsonToken.START_ARRAY, "geometries", jp);
+                geometries = readGeometryArray(jp, ctx, depth);
+            } else {
+                jp.skipChildren();
+            }
+
+            token = jp.nextToken();
+        }
+
+        expect(token, JsonToken.END_OBJECT, "geometry", jp);
+
+        if (geometries != null) {
+            return new GeometryCollection(geometries);
+        } else if (!hasCoordinates) {
+            return null;
+        }
+
+        return coordinatesToGeometry(type, ctx.coordinates, jp);
+    }
+
+    protected Geometry[] readGeometryArray(JsonParser jp, ParseContext ctx, int depth) throws IOException {
+        Geometry[] values = new Geometry[4];
+        int size = 0;
+        JsonToken token = jp.nextToken();
+
+        while (token != JsonToken.END_ARRAY) {
+            expect(token, JsonToken.START_OBJECT, "geometries", jp);
+            checkLimit(size + 1, maxMembers, "members", jp);
+
+            Geometry geom = readGeometry(jp, ctx, depth + 1);
+
+            if (geom != null) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                values[size++] = geom;
             }
+
+            token = jp.nextToken();
         }
+
+        return size == values.length ? values : Arrays.copyOf(values, size);
     }
-    
-    protected Geometry coordinatesToGeometry(String type, JsonNode coordinates, JsonParser jp)
+
+    /**
+     * Reads an array of the "coordinates" field, the parser being positioned
+     * on its START_ARRAY token.
+     */
+    protected void readCoordinateArray(JsonParser jp, ParseContext ctx, int level) throws IOException {
+        CoordinateBuffer buffer = ctx.coordinates;
+        JsonToken token = jp.nextToken();
+
+        if (token != null && token.isNumeric()) {
+            readPosition(jp, ctx, level);
+            return;
+        }
+
+        if (level > CoordinateBuffer.MAX_LEVEL - 1
+                || (buffer.getPositionLevel() != 0 && level >= buffer.getPositionLevel())) {
+            throw new JsonParseException("Coordinates are not nested consistently.", jp.getCurrentLocation());
+        }
+
+        buffer.startList(level);
+        int members = 0;
+
+        while (token != JsonToken.END_ARRAY) {
+            expect(token, JsonToken.START_ARRAY, "coordinates", jp);
+            members++;
+
+            if (level + 1 == buffer.getPositionLevel()) {
+                checkLimit(members, maxRingSize, "ring size", jp);
+            } else {
+                checkLimit(members, maxMembers, "members", jp);
+            }
+
+            readCoordinateArray(jp, ctx, level + 1);
+            token = jp.nextToken();
+        }
+    }
+
+    /**
+     * Reads a position, the parser being positioned on its first number.
+     */
+    protected void readPosition(JsonParser jp, ParseContext ctx, int level) throws IOException {
+        CoordinateBuffer buffer = ctx.coordinates;
+
+        if ((buffer.getPositionLevel() != 0 && level != buffer.getPositionLevel())
+                || level <= buffer.getMaxListLevel()) {
+            throw new JsonParseException("Coordinates are not nested consistently.", jp.getCurrentLocation());
+        }
+
+        checkLimit(ctx.positions + 1, maxCoordinates, "coordinates", jp);
+
+        double x = jp.getDoubleValue();
+        double y = readNumber(jp.nextToken(), jp);
+        double z = 0.0;
+        JsonToken token = jp.nextToken();
+
+        if (token != JsonToken.END_ARRAY) {
+            z = readNumber(token, jp);
+
+            // any further ordinates are ignored
+            while ((token = jp.nextToken()) != JsonToken.END_ARRAY) {
+                readNumber(token, jp);
+            }
+        }
+
+        buffer.addPosition(level, x, y, z);
+        ctx.positions++;
+    }
+
+    protected Geometry coordinatesToGeometry(String type, CoordinateBuffer coordinates, JsonParser jp)
             throws JsonParseException {
+        int level = getCoordinatesLevel(type, jp);
+
+        if (coordinates.getPositionLevel() != 0 ? coordinates.getPositionLevel() != level
+                : (level == 1 || coordinates.getMaxListLevel() >= level)) {
+            throw new JsonParseException("Invalid coordinates for a \""+type+"\".",
+                    jp.getCurrentLocation());
+        }
+
+        if (decimals != FULL_PRECISION) {
+            coordinates.round(decimals);
+        }
+
+        GeometryInterner interner = this.interner;
+
+        if (interner == null) {
+            return createGeometry(type, coordinates);
+        }
+
+        Geometry geom = interner.find(type, coordinates);
+
+        if (geom == null) {
+            geom = createGeometry(type, coordinates);
+            interner.add(type, coordinates, geom);
+        }
+
+        return geom;
+    }
+
+    private Geometry createGeometry(String type, CoordinateBuffer coordinates) {
+        int dim = CoordinateBuffer.DIMENSION;
+
         switch (type) {
             case POINT:
-                return readNodeAsPoint(coordinates);
+                return new Point(coordinates.get(0), coordinates.get(1), coordinates.get(2));
             case LINE_STRING:
-                return readNodeAsLineString(coordinates);
+                return GeometryBuilder.createLineString(coordinates.getCoordinates(), dim, UNKNOWN_SRID);
             case POLYGON:
-                return new Polygon(readNodeAsLinearRingArray(coordinates));
+                return GeometryBuilder.createPolygon(coordinates.getCoordinates(),
+                        coordinates.getOffsets(2), dim, UNKNOWN_SRID);
             case MULTI_POINT:
-                return new MultiPoint(readNodeAsPointArray(coordinates));
+                return GeometryBuilder.createMultiPoint(coordinates.getCoordinates(), dim, UNKNOWN_SRID);
             case MULTI_LINE_STRING:
-                return new MultiLineString(readNodeAsLineStringArray(coordinates));
+                return GeometryBuilder.createMultiLineString(coordinates.getCoordinates(),
+                        coordinates.getOffsets(2), dim, UNKNOWN_SRID);
+            default:
+                return GeometryBuilder.createMultiPolygon(coordinates.getCoordinates(),
+                        coordinates.getOffsets(3), coordinates.getOffsets(2), dim, UNKNOWN_SRID);
+        }
+    }
+
+    /**
+     * @return the level at which the positions of the given type are nested
+     */
+    protected int getCoordinatesLevel(String type, JsonParser jp) throws JsonParseException {
+        if (type == null) {
+            throw new JsonParseException("Geometry has no \"type\".", jp.getCurrentLocation());
+        }
+
+        switch (type) {
+            case POINT:
+                return 1;
+            case LINE_STRING:
+            case MULTI_POINT:
+                return 2;
+            case POLYGON:
+            case MULTI_LINE_STRING:
+                return 3;
             case MULTI_POLYGON:
-                return new MultiPolygon(readNodeAsPolygonArray(coordinates));
+                return 4;
             default:
                 throw new JsonParseException("\""+type+"\" is not a valid Geometry type.",
                         jp.getCurrentLocation());
         }
     }
-    
-    protected Geometry[] readNodeAsGeometryArray(JsonNode node, JsonParser jp) throws JsonParseException {
-        if (!node.isArray()) {
-            return null;
-        }
-        
-        List<Geometry> values = new ArrayList<>();
-        Iterator<JsonNode> it = node.iterator();
-        
-        while (it.hasNext()) {
-            JsonNode val = it.next();
-            if (val.isObject()) {
-                Iterator<Map.Entry<String, JsonNode>> fields = val.fields();
-                String type = null;
-                JsonNode coordinates = null;
-                
-                while (fields.hasNext()) {
-                    Map.Entry<String, JsonNode> e = fields.next();
-                    
-                    if (e.getKey().equals("type")) {
-                        type = e.getValue().asText();
-                    } else if (e.getKey().equals("coordinates")) {
-                        coordinates = e.getValue();
-                    }
-                }
-                
-                values.add(coordinatesToGeometry(type, coordinates, jp));
-            }
+
+    private double readNumber(JsonToken token, JsonParser jp) throws IOException {
+        if (token == null || !token.isNumeric()) {
+            throw new JsonParseException("Expected a number in position, got " + token + ".",
+                    jp.getCurrentLocation());
         }
 
-        return values.toArray(new Geometry[values.size()]);
+        return jp.getDoubleValue();
     }
-    
-    protected LineString[] readNodeAsLineStringArray(JsonNode node) {
-        if (!node.isArray()) {
-            return null;
+
+    private void expect(JsonToken token, JsonToken expected, String what, JsonParser jp)
+            throws JsonParseException {
+        if (token != expected) {
+            throw new JsonParseException("Unexpected " + token + " in " + what + ", expected "
+                    + expected + ".", jp.getCurrentLocation());
         }
-        
-        List<LineString> values = new ArrayList<>();
-        Iterator<JsonNode> it = node.iterator();
-        
-        while (it.hasNext()) {
-            JsonNode val = it.next();
-            if (val.isArray()) {
-                values.add(readNodeAsLineString(val));
-            }
+    }
+
+    private void checkLimit(int value, int limit, String what, JsonParser jp) throws JsonParseException {
+        if (value > limit) {
+            throw new JsonParseException("Geometry exceeds the maximum " + what + " of " + limit + ".",
+                    jp.getTokenLocation());
         }
+    }
 
-        return values.toArray(new LineString[values.size()]);
+    public int getMaxCoordinates() {
+        return maxCoordinates;
     }
-    
-    protected LineString readNodeAsLineString(JsonNode node) {
-        Point[] points = readNodeAsPointArray(node);
-        return new LineString(points);
+
+    /**
+     * @param maxCoordinates maximum number of positions in a geometry, collections included
+     */
+    public void setMaxCoordinates(int maxCoordinates) {
+        this.maxCoordinates = maxCoordinates;
     }
-    
-    protected Polygon[] readNodeAsPolygonArray(JsonNode node) {
-        if (!node.isArray()) {
-            return null;
-        }
-        
-        List<Polygon> values = new ArrayList<>();
-        Iterator<JsonNode> it = node.iterator();
-        
-        while (it.hasNext()) {
-            JsonNode val = it.next();
-            if (val.isArray()) {
-                values.add(new Polygon(readNodeAsLinearRingArray(val)));
-            }
-        }
 
-        return values.toArray(new Polygon[values.size()]);
+    public int getMaxDepth() {
+        return maxDepth;
     }
-    
-    protected LinearRing[] readNodeAsLinearRingArray(JsonNode node) {
-        if (!node.isArray()) {
-            return null;
-        }
-        
-        List<LinearRing> values = new ArrayList<>();
-        Iterator<JsonNode> it = node.iterator();
-        
-        while (it.hasNext()) {
-            JsonNode val = it.next();
-            if (val.isArray()) {
-                values.add(readNodeAsLinearRing(val));
-            }
-        }
 
-        return values.toArray(new LinearRing[values.size()]);
+    /**
+     * @param maxDepth maximum nesting depth of geometries, a geometry outside
+     *                 of any collection being at depth 1
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
     }
-    
-    protected LinearRing readNodeAsLinearRing(JsonNode node) {
-        Point[] points = readNodeAsPointArray(node);
-        return new LinearRing(points);
+
+    public int getMaxMembers() {
+        return maxMembers;
     }
-    
-    protected Point[] readNodeAsPointArray(JsonNode node) {
-        if (!node.isArray()) {
-            return null;
-        }
-        
-        List<Point> values = new ArrayList<>();
-        Iterator<JsonNode> it = node.iterator();
-        
-        while (it.hasNext()) {
-            JsonNode val = it.next();
-            if (val.isArray()) {
-                values.add(readNodeAsPoint(val));
-            }
-        }
 
-        return values.toArray(new Point[values.size()]);
+    /**
+     * @param maxMembers maximum number of members of a collection, lines of a
+     *                   MultiLineString, polygons of a MultiPolygon or rings of a Polygon
+     */
+    public void setMaxMembers(int maxMembers) {
+        this.maxMembers = maxMembers;
     }
 
-    protected Point readNodeAsPoint(JsonNode node) {
-        if (!node.isArray()) {
-            return null;
-        }
-        
-        List<Double> values = new ArrayList<>();
-        Iterator<JsonNode> it = node.iterator();
-        
-        while (it.hasNext()) {
-            values.add(it.next().asDouble());
+    public int getMaxRingSize() {
+        return maxRingSize;
+    }
+
+    /**
+     * @param maxRingSize maximum number of positions in a ring, a LineString or a MultiPoint
+     */
+    public void setMaxRingSize(int maxRingSize) {
+        this.maxRingSize = maxRingSize;
+    }
+
+    public int getDecimals() {
+        return decimals;
+    }
+
+    /**
+     * @param decimals number of decimals coordinates are rounded to, or
+     *                 {@link #FULL_PRECISION} to keep them as they are
+     */
+    public void setDecimals(int decimals) {
+        if (decimals != FULL_PRECISION && (decimals < 0 || decimals > CoordinateKernels.MAX_DECIMALS)) {
+            throw new IllegalArgumentException("Decimals must be between 0 and " + CoordinateKernels.MAX_DECIMALS
+                    + ", got " + decimals);
         }
-        
-        return new Point(values.get(0), values.get(1), values.size() > 2 ? values.get(2) : 0.0);
+
+        this.decimals = decimals;
+    }
+
+    public GeometryInterner getInterner() {
+        return interner;
+    }
+
+    /**
+     * @param interner table of shared geometries, or null to disable interning
+     */
+    public void setInterner(GeometryInterner interner) {
+        this.interner = interner;
     }
 }
@@ -0,0 +1,203 @@
+package org.postgis.geojson.deserializers;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.postgis.Geometry;
+import org.postgis.LineString;
+import org.postgis.MultiLineString;
+import org.postgis.MultiPoint;
+import org.postgis.MultiPolygon;
+import org.postgis.Point;
+import org.postgis.Polygon;
+import static org.postgis.geojson.GeometryTypes.*;
+
+/**
+ * Bounded table of deserialized geometries, so that a geometry read again with
+ * the same type and coordinates is returned as the instance read before.
+ *
+ * The table is direct mapped on the hash of the coordinates, computed while
+ * they are streamed: a new geometry replaces whatever was in its slot. Entries
+ * are weakly referenced, so the table never keeps a geometry alive by itself.
+ * A hit is confirmed by comparing the coordinates, so hash collisions never
+ * return a different geometry.
+ *
+ * Interned geometries are shared by everyone who read them and must be
+ * treated as immutable. Members of a GeometryCollection are interned one by
+ * one, the collection itself is not.
+ */
+public class GeometryInterner {
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final AtomicReferenceArray<Entry> table;
+    private final int mask;
+
+    private static final class Entry extends WeakReference<Geometry> {
+        private final long hash;
+
+        Entry(long hash, Geometry geom) {
+            super(geom);
+            this.hash = hash;
+        }
+    }
+
+    public GeometryInterner() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity maximum number of geometries held, rounded up to a power of two
+     */
+    public GeometryInterner(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30, got " + capacity);
+        }
+
+        int size = Integer.highestOneBit(capacity);
+        size = size < capacity ? size << 1 : size;
+
+        this.table = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public int getCapacity() {
+        return table.length();
+    }
+
+    /**
+     * @return the interned geometry of the given type with exactly the given
+     *         coordinates, or null if there is none
+     */
+    public Geometry find(String type, CoordinateBuffer coordinates) {
+        long hash = hash(type, coordinates);
+        Entry entry = table.get(index(hash));
+
+        if (entry == null || entry.hash != hash) {
+            return null;
+        }
+
+        Geometry geom = entry.get();
+        return geom != null && matches(geom, type, coordinates) ? geom : null;
+    }
+
+    /**
+     * Interns a geometry just built from the given coordinates.
+     */
+    public void add(String type, CoordinateBuffer coordinates, Geometry geom) {
+        long hash = hash(type, coordinates);
+        table.set(index(hash), new Entry(hash, geom));
+    }
+
+    private long hash(String type, CoordinateBuffer coordinates) {
+        return coordinates.getHash() ^ ((long) type.hashCode() * 0x9E3779B97F4A7C15L);
+    }
+
+    private int index(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private boolean matches(Geometry geom, String type, CoordinateBuffer c) {
+        switch (type) {
+            case POINT:
+                return geom.getClass() == Point.class && matches((Point) geom, c, 0);
+            case LINE_STRING:
+                return geom.getClass() == LineString.class
+                        && matches(((LineString) geom).getPoints(), c, 0, c.getVertices());
+            case MULTI_POINT:
+                return geom.getClass() == MultiPoint.class
+                        && matches(((MultiPoint) geom).getPoints(), c, 0, c.getVertices());
+            case POLYGON:
+                return geom.getClass() == Polygon.class
+                        && matches((Polygon) geom, c, 0, c.getOffsetCount(2), c.getVertices());
+            case MULTI_LINE_STRING:
+                return geom.getClass() == MultiLineString.class && matches((MultiLineString) geom, c);
+            case MULTI_POLYGON:
+                return geom.getClass() == MultiPolygon.class && matches((MultiPolygon) geom, c);
+            default:
+                return false;
+        }
+    }
+
+    private boolean matches(MultiLineString mls, CoordinateBuffer c) {
+        int lines = c.getOffsetCount(2);
+
+        if (mls.numLines() != lines) {
+            return false;
+        }
+
+        for (int i=0; i<lines; i++) {
+            int end = i + 1 < lines ? c.getOffset(2, i + 1) : c.getVertices();
+
+            if (!matches(mls.getLine(i).getPoints(), c, c.getOffset(2, i), end)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean matches(MultiPolygon mp, CoordinateBuffer c) {
+        int polygons = c.getOffsetCount(2);
+        int rings = c.getOffsetCount(3);
+
+        if (mp.numPolygons() != polygons) {
+            return false;
+        }
+
+        for (int i=0; i<polygons; i++) {
+            int firstRing = c.getOffset(2, i);
+            int lastRing = i + 1 < polygons ? c.getOffset(2, i + 1) : rings;
+            int end = lastRing < rings ? c.getOffset(3, lastRing) : c.getVertices();
+
+            if (!matches(mp.getPolygon(i), c, firstRing, lastRing, end)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Compares a polygon with the rings <code>[firstRing, lastRing)</code>, the
+     * ring offsets being at the level below the polygon level.
+     */
+    private boolean matches(Polygon polygon, CoordinateBuffer c, int firstRing, int lastRing, int end) {
+        int level = c.getPositionLevel() - 1;
+
+        if (polygon.numRings() != lastRing - firstRing) {
+            return false;
+        }
+
+        for (int i=firstRing; i<lastRing; i++) {
+            int ringEnd = i + 1 < lastRing ? c.getOffset(level, i + 1) : end;
+
+            if (!matches(polygon.getRing(i - firstRing).getPoints(), c, c.getOffset(level, i), ringEnd)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean matches(Point[] points, CoordinateBuffer c, int start, int end) {
+        if (points.length != end - start) {
+            return false;
+        }
+
+        for (int i=0; i<points.length; i++) {
+            if (!matches(points[i], c, start + i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean matches(Point point, CoordinateBuffer c, int vertex) {
+        int index = vertex * CoordinateBuffer.DIMENSION;
+
+        return point.dimension == CoordinateBuffer.DIMENSION && !point.haveMeasure
+                && Double.doubleToLongBits(point.x) == Double.doubleToLongBits(c.get(index))
+                && Double.doubleToLongBits(point.y) == Double.doubleToLongBits(c.get(index + 1))
+                && Double.doubleToLongBits(point.z) == Double.doubleToLongBits(c.get(index + 2));
+    }
+}
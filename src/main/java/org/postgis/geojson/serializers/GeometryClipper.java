@@ -0,0 +1,448 @@
+package org.postgis.geojson.serializers;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.postgis.Geometry;
+import org.postgis.GeometryCollection;
+import org.postgis.LineString;
+import org.postgis.MultiLineString;
+import org.postgis.MultiPoint;
+import org.postgis.MultiPolygon;
+import org.postgis.Point;
+import org.postgis.Polygon;
+
+/**
+ * Clips coordinates against a rectangular envelope while they are being written.
+ *
+ * Lines are clipped segment by segment (Cohen-Sutherland) and rings are pushed
+ * through a four stage Sutherland-Hodgman pipeline, so no intermediate geometry
+ * is ever built. Clipped points are handed to a {@link PointSink}, which either
+ * counts them or writes them out.
+ *
+ * A clipper holds the scratch space its operations reuse, so it must not be
+ * shared between threads: {@link GeometrySerializer} copies its own for every
+ * geometry it writes.
+ */
+class GeometryClipper {
+    static final int INSIDE  = 0;
+    static final int OUTSIDE = 1;
+    static final int CROSSES = 2;
+
+    private static final int LEFT   = 1;
+    private static final int RIGHT  = 2;
+    private static final int BOTTOM = 4;
+    private static final int TOP    = 8;
+
+    private final double minX;
+    private final double minY;
+    private final double maxX;
+    private final double maxY;
+
+    private final double[] box = new double[4];
+    private RingPipeline pipeline;
+    private final CountingSink counter = new CountingSink();
+
+    GeometryClipper(double minX, double minY, double maxX, double maxY) {
+        if (minX > maxX || minY > maxY) {
+            throw new IllegalArgumentException("Invalid clip envelope: ["
+                    + minX + ", " + minY + ", " + maxX + ", " + maxY + "]");
+        }
+
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    /**
+     * Creates a clipper for the same envelope, with scratch space of its own.
+     */
+    GeometryClipper(GeometryClipper clipper) {
+        this(clipper.minX, clipper.minY, clipper.maxX, clipper.maxY);
+    }
+
+    /**
+     * Receives the output of a clipping operation, one part at a time.
+     */
+    interface PointSink {
+        void startPart() throws IOException;
+        void point(double x, double y, double z) throws IOException;
+        void endPart() throws IOException;
+    }
+
+    /**
+     * Sink that only counts parts and points, used to decide what to write
+     * before anything is written.
+     */
+    private static class CountingSink implements PointSink {
+        int parts;
+        int points;
+
+        CountingSink reset() {
+            parts = 0;
+            points = 0;
+            return this;
+        }
+
+        @Override
+        public void startPart() {
+            parts++;
+        }
+
+        @Override
+        public void point(double x, double y, double z) {
+            points++;
+        }
+
+        @Override
+        public void endPart() {
+        }
+    }
+
+    boolean contains(double x, double y) {
+        return x >= minX && x <= maxX && y >= minY && y <= maxY;
+    }
+
+    /**
+     * Relates the bounding box of a geometry to the clip envelope.
+     *
+     * @return {@link #INSIDE}, {@link #OUTSIDE} or {@link #CROSSES}
+     */
+    int relate(Geometry geom) {
+        resetBox();
+        expand(geom, box);
+        return relateBox();
+    }
+
+    int relate(Point[] points) {
+        resetBox();
+        expand(points, box);
+        return relateBox();
+    }
+
+    private int relateBox() {
+        if (box[0] > box[2] || box[2] < minX || box[0] > maxX || box[3] < minY || box[1] > maxY) {
+            return OUTSIDE;
+        } else if (box[0] >= minX && box[2] <= maxX && box[1] >= minY && box[3] <= maxY) {
+            return INSIDE;
+        }
+
+        return CROSSES;
+    }
+
+    private void resetBox() {
+        box[0] = box[1] = Double.POSITIVE_INFINITY;
+        box[2] = box[3] = Double.NEGATIVE_INFINITY;
+    }
+
+    private void expand(Geometry geom, double[] box) {
+        if (geom instanceof Point) {
+            expand((Point) geom, box);
+        } else if (geom instanceof LineString) {
+            expand(((LineString) geom).getPoints(), box);
+        } else if (geom instanceof Polygon) {
+            // holes lie within the exterior ring
+            expand(((Polygon) geom).getRing(0).getPoints(), box);
+        } else if (geom instanceof MultiPoint) {
+            expand(((MultiPoint) geom).getPoints(), box);
+        } else if (geom instanceof MultiLineString) {
+            for (LineString ls : ((MultiLineString) geom).getLines()) {
+                expand(ls.getPoints(), box);
+            }
+        } else if (geom instanceof MultiPolygon) {
+            for (Polygon polygon : ((MultiPolygon) geom).getPolygons()) {
+                expand(polygon.getRing(0).getPoints(), box);
+            }
+        } else if (geom instanceof GeometryCollection) {
+            for (Geometry g : ((GeometryCollection) geom).getGeometries()) {
+                expand(g, box);
+            }
+        }
+    }
+
+    private void expand(Point[] points, double[] box) {
+        for (Point point : points) {
+            expand(point, box);
+        }
+    }
+
+    private void expand(Point point, double[] box) {
+        if (point.x < box[0]) box[0] = point.x;
+        if (point.y < box[1]) box[1] = point.y;
+        if (point.x > box[2]) box[2] = point.x;
+        if (point.y > box[3]) box[3] = point.y;
+    }
+
+    private int outcode(double x, double y) {
+        int code = 0;
+
+        if (x < minX) {
+            code |= LEFT;
+        } else if (x > maxX) {
+            code |= RIGHT;
+        }
+
+        if (y < minY) {
+            code |= BOTTOM;
+        } else if (y > maxY) {
+            code |= TOP;
+        }
+
+        return code;
+    }
+
+    /**
+     * Clips a line to the envelope. A line leaving and re-entering the envelope
+     * yields one part per visible run.
+     *
+     * @return the number of parts handed to the sink
+     */
+    int clipLine(Point[] points, PointSink sink) throws IOException {
+        int parts = 0;
+        boolean open = false;
+
+        for (int i = 1; i < points.length; i++) {
+            Point p0 = points[i - 1];
+            Point p1 = points[i];
+
+            double x0 = p0.x, y0 = p0.y, z0 = p0.z;
+            double x1 = p1.x, y1 = p1.y, z1 = p1.z;
+            int c0 = outcode(x0, y0);
+            int c1 = outcode(x1, y1);
+            boolean endClipped = false;
+            boolean accept;
+
+            while (true) {
+                if ((c0 | c1) == 0) {
+                    accept = true;
+                    break;
+                } else if ((c0 & c1) != 0) {
+                    accept = false;
+                    break;
+                }
+
+                int code = c0 != 0 ? c0 : c1;
+                double x, y, t;
+
+                if ((code & TOP) != 0) {
+                    t = (maxY - y0) / (y1 - y0);
+                    x = x0 + t * (x1 - x0);
+                    y = maxY;
+                } else if ((code & BOTTOM) != 0) {
+                    t = (minY - y0) / (y1 - y0);
+                    x = x0 + t * (x1 - x0);
+                    y = minY;
+                } else if ((code & RIGHT) != 0) {
+                    t = (maxX - x0) / (x1 - x0);
+                    x = maxX;
+                    y = y0 + t * (y1 - y0);
+                } else {
+                    t = (minX - x0) / (x1 - x0);
+                    x = minX;
+                    y = y0 + t * (y1 - y0);
+                }
+
+                double z = z0 + t * (z1 - z0);
+
+                if (code == c0) {
+                    x0 = x; y0 = y; z0 = z;
+                    c0 = outcode(x0, y0);
+                } else {
+                    x1 = x; y1 = y; z1 = z;
+                    c1 = outcode(x1, y1);
+                    endClipped = true;
+                }
+            }
+
+            if (!accept) {
+                continue;
+            }
+
+            if (!open) {
+                // a segment only touching a corner of the envelope
+                if (x0 == x1 && y0 == y1) {
+                    continue;
+                }
+
+                sink.startPart();
+                sink.point(x0, y0, z0);
+                open = true;
+                parts++;
+            }
+
+            sink.point(x1, y1, z1);
+
+            if (endClipped) {
+                sink.endPart();
+                open = false;
+            }
+        }
+
+        if (open) {
+            sink.endPart();
+        }
+
+        return parts;
+    }
+
+    /**
+     * @return the number of parts the line is clipped into
+     */
+    int countLine(Point[] points) throws IOException {
+        return clipLine(points, counter.reset());
+    }
+
+    /**
+     * @return the number of points the ring is clipped into
+     */
+    int countRing(Point[] points) throws IOException {
+        return clipRing(points, counter.reset());
+    }
+
+    /**
+     * Clips a ring to the envelope. The output ring is always handed to the
+     * sink as a single closed part, even if it ends up degenerate.
+     *
+     * @return the number of points handed to the sink, including the closing one
+     */
+    int clipRing(Point[] points, PointSink sink) throws IOException {
+        if (pipeline == null) {
+            pipeline = new RingPipeline();
+        }
+
+        pipeline.reset(sink);
+        sink.startPart();
+
+        for (Point point : points) {
+            pipeline.push(0, point.x, point.y, point.z);
+        }
+
+        pipeline.close(0);
+        sink.endPart();
+
+        return pipeline.emitted;
+    }
+
+    /**
+     * Sutherland-Hodgman pipeline with one stage per envelope edge: left, right,
+     * bottom and top. Each stage forwards its output to the next one and the
+     * last stage writes to the sink, dropping repeated points and closing the ring.
+     */
+    private class RingPipeline {
+        private static final int STAGES = 4;
+
+        private PointSink sink;
+
+        private final boolean[] started = new boolean[STAGES];
+        private final boolean[] prevInside = new boolean[STAGES];
+        private final double[] firstX = new double[STAGES];
+        private final double[] firstY = new double[STAGES];
+        private final double[] firstZ = new double[STAGES];
+        private final double[] prevX = new double[STAGES];
+        private final double[] prevY = new double[STAGES];
+        private final double[] prevZ = new double[STAGES];
+
+        private int emitted;
+        private double outFirstX, outFirstY, outFirstZ;
+        private double outLastX, outLastY;
+
+        void reset(PointSink sink) {
+            this.sink = sink;
+            Arrays.fill(started, false);
+            emitted = 0;
+        }
+
+        void push(int stage, double x, double y, double z) throws IOException {
+            if (stage == STAGES) {
+                emit(x, y, z);
+                return;
+            }
+
+            boolean inside = inside(stage, x, y);
+
+            if (!started[stage]) {
+                started[stage] = true;
+                firstX[stage] = x;
+                firstY[stage] = y;
+                firstZ[stage] = z;
+            } else if (inside != prevInside[stage]) {
+                intersect(stage, prevX[stage], prevY[stage], prevZ[stage], x, y, z);
+            }
+
+            if (inside) {
+                push(stage + 1, x, y, z);
+            }
+
+            prevInside[stage] = inside;
+            prevX[stage] = x;
+            prevY[stage] = y;
+            prevZ[stage] = z;
+        }
+
+        void close(int stage) throws IOException {
+            if (stage == STAGES) {
+                if (emitted > 0 && (outLastX != outFirstX || outLastY != outFirstY)) {
+                    sink.point(outFirstX, outFirstY, outFirstZ);
+                    emitted++;
+                }
+                return;
+            }
+
+            if (started[stage] && inside(stage, firstX[stage], firstY[stage]) != prevInside[stage]) {
+                intersect(stage, prevX[stage], prevY[stage], prevZ[stage],
+                        firstX[stage], firstY[stage], firstZ[stage]);
+            }
+
+            close(stage + 1);
+        }
+
+        private void emit(double x, double y, double z) throws IOException {
+            if (emitted == 0) {
+                outFirstX = x;
+                outFirstY = y;
+                outFirstZ = z;
+            } else if (x == outLastX && y == outLastY) {
+                return;
+            }
+
+            sink.point(x, y, z);
+            outLastX = x;
+            outLastY = y;
+            emitted++;
+        }
+
+        private boolean inside(int stage, double x, double y) {
+            switch (stage) {
+                case 0:  return x >= minX;
+                case 1:  return x <= maxX;
+                case 2:  return y >= minY;
+                default: return y <= maxY;
+            }
+        }
+
+        private void intersect(int stage, double ax, double ay, double az,
+                double bx, double by, double bz) throws IOException {
+            double t;
+
+            switch (stage) {
+                case 0:
+                    t = (minX - ax) / (bx - ax);
+                    push(stage + 1, minX, ay + t * (by - ay), az + t * (bz - az));
+                    break;
+                case 1:
+                    t = (maxX - ax) / (bx - ax);
+                    push(stage + 1, maxX, ay + t * (by - ay), az + t * (bz - az));
+                    break;
+                case 2:
+                    t = (minY - ay) / (by - ay);
+                    push(stage + 1, ax + t * (bx - ax), minY, az + t * (bz - az));
+                    break;
+                default:
+                    t = (maxY - ay) / (by - ay);
+                    push(stage + 1, ax + t * (bx - ax), maxY, az + t * (bz - az));
+                    break;
+            }
+        }
+    }
+}
@@ -23,10 +23,46 @@ import static org.postgis.geojson.GeometryTypes.*;
  * @author Maycon Viana Bordin <mayconbordin@gmail.com>
  */
 public class GeometrySerializer extends JsonSerializer<Geometry> {
+    private final GeometryClipper clipper;
+
+    public GeometrySerializer() {
+        this.clipper = null;
+    }
+
+    /**
+     * Creates a serializer that clips every geometry to the given envelope,
+     * expanded by <code>buffer</code> on each side. Meant for map tile endpoints,
+     * where only the part of a geometry that falls within the tile is needed.
+     * 
+     * Lines and polygon rings are clipped while their coordinates are written,
+     * members of multi geometries and collections that fall fully outside the
+     * envelope are dropped and geometries left with nothing inside are written
+     * with empty coordinates. A line split into several runs by the envelope is
+     * written as a MultiLineString.
+     * 
+     * @param minX   minimum x of the envelope
+     * @param minY   minimum y of the envelope
+     * @param maxX   maximum x of the envelope
+     * @param maxY   maximum y of the envelope
+     * @param buffer distance by which the envelope is expanded on each side
+     */
+    public GeometrySerializer(double minX, double minY, double maxX, double maxY, double buffer) {
+        this.clipper = new GeometryClipper(minX - buffer, minY - buffer, maxX + buffer, maxY + buffer);
+    }
     
     @Override
     public void serialize(Geometry geom, JsonGenerator json, SerializerProvider provider) 
             throws IOException, JsonProcessingException {
+        if (clipper == null) {
+            writeGeometry(geom, json);
+        } else {
+            // the clipper reuses its scratch space, so every call gets its own
+            GeometryClipper callClipper = new GeometryClipper(clipper);
+            writeClipped(geom, callClipper.relate(geom), callClipper, false, json);
+        }
+    }
+
+    private void writeGeometry(Geometry geom, JsonGenerator json) throws IOException {
         json.writeStartObject();
 
         if (geom instanceof Point) {
@@ -125,6 +161,352 @@ public class GeometrySerializer extends JsonSerializer<Geometry> {
         writeEndCoordinates(json);
     }
 
+    protected void serializeEmpty(Geometry geom, JsonGenerator json) throws IOException {
+        writeTypeField(getType(geom), json);
+
+        if (geom instanceof GeometryCollection) {
+            json.writeArrayFieldStart("geometries");
+            json.writeEndArray();
+        } else {
+            writeStartCoordinates(json);
+            writeEndCoordinates(json);
+        }
+    }
+
+    /**
+     * Writes a geometry clipped to the envelope. Whatever decides if anything
+     * is left of it, the relation of its members and the parts they clip into,
+     * is worked out once before anything is written and handed on to the
+     * writing pass.
+     *
+     * @param relation  how the geometry relates to the envelope
+     * @param dropEmpty whether nothing is written when nothing is left, as for
+     *                  the members of a collection
+     * @return whether the geometry was written
+     */
+    private boolean writeClipped(Geometry geom, int relation, GeometryClipper clipper, boolean dropEmpty,
+            JsonGenerator json) throws IOException {
+        if (relation == GeometryClipper.OUTSIDE) {
+            if (!dropEmpty) {
+                json.writeStartObject();
+                serializeEmpty(geom, json);
+                json.writeEndObject();
+            }
+
+            return !dropEmpty;
+        } else if (relation == GeometryClipper.INSIDE && !(geom instanceof GeometryCollection)) {
+            writeGeometry(geom, json);
+            return true;
+        }
+
+        if (geom instanceof Polygon) {
+            Polygon polygon = (Polygon) geom;
+            boolean valid = isClippedRingValid(polygon.getRing(0).getPoints(), clipper);
+
+            if (dropEmpty && !valid) {
+                return false;
+            }
+
+            json.writeStartObject();
+            writeClippedPolygon(polygon, valid, clipper, json);
+        } else if (geom instanceof LineString) {
+            LineString ls = (LineString) geom;
+            int parts = clipper.countLine(ls.getPoints());
+
+            if (dropEmpty && parts == 0) {
+                return false;
+            }
+
+            json.writeStartObject();
+            writeClippedLineString(ls, parts, clipper, json);
+        } else if (geom instanceof MultiPolygon) {
+            MultiPolygon mp = (MultiPolygon) geom;
+            int[] relations = relatePolygons(mp, clipper);
+
+            if (dropEmpty && allEqual(relations, GeometryClipper.OUTSIDE)) {
+                return false;
+            }
+
+            json.writeStartObject();
+            writeClippedMultiPolygon(mp, relations, clipper, json);
+        } else if (geom instanceof MultiPoint) {
+            MultiPoint mp = (MultiPoint) geom;
+
+            if (dropEmpty && !containsAny(mp.getPoints(), clipper)) {
+                return false;
+            }
+
+            json.writeStartObject();
+            writeClippedMultiPoint(mp, clipper, json);
+        } else if (geom instanceof MultiLineString) {
+            MultiLineString mls = (MultiLineString) geom;
+            int[] parts = countParts(mls, clipper);
+
+            if (dropEmpty && allEqual(parts, 0)) {
+                return false;
+            }
+
+            json.writeStartObject();
+            writeClippedMultiLineString(mls, parts, clipper, json);
+        } else if (geom instanceof GeometryCollection) {
+            GeometryCollection gc = (GeometryCollection) geom;
+
+            // only a nested collection is walked twice, to know if any of its members is left
+            if (dropEmpty && relation == GeometryClipper.CROSSES && !anySurvives(gc.getGeometries(), clipper)) {
+                return false;
+            }
+
+            json.writeStartObject();
+            writeClippedGeometryCollection(gc, clipper, json);
+        } else {
+            // a point is never across the envelope
+            return false;
+        }
+
+        json.writeEndObject();
+        return true;
+    }
+
+    private void writeClippedGeometryCollection(GeometryCollection gc, GeometryClipper clipper, JsonGenerator json)
+            throws IOException {
+        writeTypeField(GEOMETRY_COLLECTION, json);
+        json.writeArrayFieldStart("geometries");
+
+        for (Geometry geom : gc.getGeometries()) {
+            writeClipped(geom, clipper.relate(geom), clipper, true, json);
+        }
+
+        json.writeEndArray();
+    }
+
+    private void writeClippedMultiLineString(MultiLineString mls, int[] parts, GeometryClipper clipper,
+            JsonGenerator json) throws IOException {
+        writeTypeField(MULTI_LINE_STRING, json);
+        writeStartCoordinates(json);
+
+        PointWriter writer = new PointWriter(json, true);
+        LineString[] lines = mls.getLines();
+
+        for (int i=0; i<lines.length; i++) {
+            if (parts[i] > 0) {
+                clipper.clipLine(lines[i].getPoints(), writer);
+            }
+        }
+
+        writeEndCoordinates(json);
+    }
+
+    private void writeClippedMultiPoint(MultiPoint mp, GeometryClipper clipper, JsonGenerator json)
+            throws IOException {
+        writeTypeField(MULTI_POINT, json);
+        writeStartCoordinates(json);
+
+        for (Point point : mp.getPoints()) {
+            if (clipper.contains(point.x, point.y)) {
+                json.writeStartArray();
+                writeNumbers(json, point.getX(), point.getY(), point.getZ());
+                json.writeEndArray();
+            }
+        }
+
+        writeEndCoordinates(json);
+    }
+
+    private void writeClippedMultiPolygon(MultiPolygon mp, int[] relations, GeometryClipper clipper,
+            JsonGenerator json) throws IOException {
+        writeTypeField(MULTI_POLYGON, json);
+        writeStartCoordinates(json);
+
+        Polygon[] polygons = mp.getPolygons();
+
+        for (int i=0; i<polygons.length; i++) {
+            Polygon polygon = polygons[i];
+
+            if (relations[i] == GeometryClipper.INSIDE) {
+                json.writeStartArray();
+
+                for (int j=0; j<polygon.numRings(); j++) {
+                    json.writeStartArray();
+                    writePoints(json, polygon.getRing(j).getPoints());
+                    json.writeEndArray();
+                }
+
+                json.writeEndArray();
+            } else if (relations[i] == GeometryClipper.CROSSES) {
+                json.writeStartArray();
+                writeClippedRings(polygon, clipper, json);
+                json.writeEndArray();
+            }
+        }
+
+        writeEndCoordinates(json);
+    }
+
+    private void writeClippedLineString(LineString ls, int parts, GeometryClipper clipper, JsonGenerator json)
+            throws IOException {
+        writeTypeField(parts > 1 ? MULTI_LINE_STRING : LINE_STRING, json);
+        writeStartCoordinates(json);
+
+        if (parts > 0) {
+            clipper.clipLine(ls.getPoints(), new PointWriter(json, parts > 1));
+        }
+
+        writeEndCoordinates(json);
+    }
+
+    private void writeClippedPolygon(Polygon polygon, boolean valid, GeometryClipper clipper, JsonGenerator json)
+            throws IOException {
+        writeTypeField(POLYGON, json);
+        writeStartCoordinates(json);
+
+        if (valid) {
+            writeClippedRings(polygon, clipper, json);
+        }
+
+        writeEndCoordinates(json);
+    }
+
+    /**
+     * Writes the rings of a polygon whose exterior ring is known to survive
+     * clipping, dropping the holes that do not.
+     */
+    private void writeClippedRings(Polygon polygon, GeometryClipper clipper, JsonGenerator json) throws IOException {
+        PointWriter writer = new PointWriter(json, true);
+        clipper.clipRing(polygon.getRing(0).getPoints(), writer);
+
+        for (int i=1; i<polygon.numRings(); i++) {
+            Point[] points = polygon.getRing(i).getPoints();
+            int relation = clipper.relate(points);
+
+            if (relation == GeometryClipper.INSIDE) {
+                json.writeStartArray();
+                writePoints(json, points);
+                json.writeEndArray();
+            } else if (relation == GeometryClipper.CROSSES && isClippedRingValid(points, clipper)) {
+                clipper.clipRing(points, writer);
+            }
+        }
+    }
+
+    /**
+     * @return the relation of every polygon to the envelope, polygons whose
+     *         exterior ring clips to nothing being outside
+     */
+    private int[] relatePolygons(MultiPolygon mp, GeometryClipper clipper) throws IOException {
+        Polygon[] polygons = mp.getPolygons();
+        int[] relations = new int[polygons.length];
+
+        for (int i=0; i<polygons.length; i++) {
+            int relation = clipper.relate(polygons[i]);
+
+            if (relation == GeometryClipper.CROSSES
+                    && !isClippedRingValid(polygons[i].getRing(0).getPoints(), clipper)) {
+                relation = GeometryClipper.OUTSIDE;
+            }
+
+            relations[i] = relation;
+        }
+
+        return relations;
+    }
+
+    /**
+     * @return the number of parts every line is clipped into
+     */
+    private int[] countParts(MultiLineString mls, GeometryClipper clipper) throws IOException {
+        LineString[] lines = mls.getLines();
+        int[] parts = new int[lines.length];
+
+        for (int i=0; i<lines.length; i++) {
+            parts[i] = clipper.countLine(lines[i].getPoints());
+        }
+
+        return parts;
+    }
+
+    /**
+     * @return whether anything of the geometries is left once clipped
+     */
+    private boolean anySurvives(Geometry[] geoms, GeometryClipper clipper) throws IOException {
+        for (Geometry geom : geoms) {
+            int relation = clipper.relate(geom);
+
+            if (relation == GeometryClipper.INSIDE) {
+                return true;
+            } else if (relation == GeometryClipper.OUTSIDE) {
+                continue;
+            } else if (geom instanceof Polygon) {
+                if (isClippedRingValid(((Polygon) geom).getRing(0).getPoints(), clipper)) {
+                    return true;
+                }
+            } else if (geom instanceof LineString) {
+                if (clipper.countLine(((LineString) geom).getPoints()) > 0) {
+                    return true;
+                }
+            } else if (geom instanceof MultiPoint) {
+                if (containsAny(((MultiPoint) geom).getPoints(), clipper)) {
+                    return true;
+                }
+            } else if (geom instanceof MultiLineString) {
+                if (anySurvives(((MultiLineString) geom).getLines(), clipper)) {
+                    return true;
+                }
+            } else if (geom instanceof MultiPolygon) {
+                if (anySurvives(((MultiPolygon) geom).getPolygons(), clipper)) {
+                    return true;
+                }
+            } else if (geom instanceof GeometryCollection) {
+                if (anySurvives(((GeometryCollection) geom).getGeometries(), clipper)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private boolean containsAny(Point[] points, GeometryClipper clipper) {
+        for (Point point : points) {
+            if (clipper.contains(point.x, point.y)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean allEqual(int[] values, int value) {
+        for (int v : values) {
+            if (v != value) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isClippedRingValid(Point[] points, GeometryClipper clipper) throws IOException {
+        return clipper.countRing(points) >= 4;
+    }
+
+    protected String getType(Geometry geom) {
+        if (geom instanceof Point) {
+            return POINT;
+        } else if (geom instanceof Polygon) {
+            return POLYGON;
+        } else if (geom instanceof LineString) {
+            return LINE_STRING;
+        } else if (geom instanceof MultiPolygon) {
+            return MULTI_POLYGON;
+        } else if (geom instanceof MultiPoint) {
+            return MULTI_POINT;
+        } else if (geom instanceof MultiLineString) {
+            return MULTI_LINE_STRING;
+        } else {
+            return GEOMETRY_COLLECTION;
+        }
+    }
+
     protected void writeTypeField(String type, JsonGenerator json) throws IOException {
         json.writeStringField("type", type);
     }
@@ -150,4 +532,39 @@ public class GeometrySerializer extends JsonSerializer<Geometry> {
             json.writeEndArray();
         }
     }
+
+    /**
+     * Writes clipped points as coordinate arrays, each part wrapped in its own
+     * array when <code>nested</code> is set.
+     */
+    private class PointWriter implements GeometryClipper.PointSink {
+        private final JsonGenerator json;
+        private final boolean nested;
+
+        PointWriter(JsonGenerator json, boolean nested) {
+            this.json = json;
+            this.nested = nested;
+        }
+
+        @Override
+        public void startPart() throws IOException {
+            if (nested) {
+                json.writeStartArray();
+            }
+        }
+
+        @Override
+        public void point(double x, double y, double z) throws IOException {
+            json.writeStartArray();
+            writeNumbers(json, x, y, z);
+            json.writeEndArray();
+        }
+
+        @Override
+        public void endPart() throws IOException {
+            if (nested) {
+                json.writeEndArray();
+            }
+        }
+    }
 }
@@ -0,0 +1,180 @@
+package org.postgis.geojson.stream;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonParserSequence;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads values one at a time from a stream of GeoJSON, blocking on the
+ * underlying input only for as much as the next value needs.
+ *
+ * The input may be a JSON array of values, a FeatureCollection, whose
+ * "features" are read, or a sequence of root-level values, such as newline
+ * delimited GeoJSON. Values are bound to <code>type</code> with the given
+ * mapper, so it must have a {@link org.postgis.geojson.PostGISModule} registered
+ * to read geometries.
+ *
+ * A root-level object is a FeatureCollection when its first field is either
+ * "features" or a "type" of "FeatureCollection"; any other object is read as
+ * a single value. Nothing but that first field is buffered, the rest of the
+ * object is read straight from the input, so the limits of the deserializers
+ * apply to it as it is read and report where in the input they were exceeded.
+ */
+public class GeoJsonReader<T> implements Closeable {
+    private static final int START    = 0;
+    private static final int ARRAY    = 1;
+    private static final int SEQUENCE = 2;
+    private static final int DONE     = 3;
+
+    private static final String FEATURE_COLLECTION = "FeatureCollection";
+
+    private final ObjectMapper mapper;
+    private final Class<T> type;
+    private final JsonParser parser;
+
+    private int state = START;
+    private boolean inFeatureCollection;
+
+    public GeoJsonReader(ObjectMapper mapper, Class<T> type, InputStream in) throws IOException {
+        this.mapper = mapper;
+        this.type = type;
+        this.parser = mapper.getFactory().createParser(in);
+    }
+
+    /**
+     * @return the next value, or null once the input is exhausted
+     */
+    public T read() throws IOException {
+        while (true) {
+            T value;
+
+            switch (state) {
+                case START:
+                    value = readStart();
+                    break;
+                case ARRAY:
+                    value = readArrayElement();
+                    break;
+                case SEQUENCE:
+                    value = readSequenceElement();
+                    break;
+                default:
+                    return null;
+            }
+
+            // JSON nulls are skipped, null only signals the end of the input
+            if (value != null || state == DONE) {
+                return value;
+            }
+        }
+    }
+
+    private T readStart() throws IOException {
+        JsonToken token = parser.nextToken();
+
+        if (token == null) {
+            state = DONE;
+            return null;
+        } else if (token == JsonToken.START_ARRAY) {
+            state = ARRAY;
+            return null;
+        } else if (token != JsonToken.START_OBJECT) {
+            state = SEQUENCE;
+            return mapper.readValue(parser, type);
+        }
+
+        // a FeatureCollection is told apart by its first field, anything else is read back from
+        // the start of the object followed by the rest of it, straight from the input
+        TokenBuffer buffer = new TokenBuffer(mapper, false);
+        buffer.writeStartObject();
+
+        if (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            buffer.writeFieldName(fieldName);
+            token = parser.nextToken();
+
+            if (token == JsonToken.START_ARRAY && fieldName.equals("features")) {
+                return startFeatures();
+            } else if (token == JsonToken.VALUE_STRING && fieldName.equals("type")
+                    && parser.getText().equals(FEATURE_COLLECTION)) {
+                return skipToFeatures();
+            }
+        }
+
+        // only the start of a structured value is copied, its contents follow from the input
+        if (parser.getCurrentToken() != null) {
+            buffer.copyCurrentEvent(parser);
+        }
+
+        state = SEQUENCE;
+        return readValue(JsonParserSequence.createFlattened(buffer.asParser(mapper), parser));
+    }
+
+    private T readValue(JsonParser jp) throws IOException {
+        jp.nextToken();
+        return mapper.readValue(jp, type);
+    }
+
+    private T skipToFeatures() throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+
+            if (parser.nextToken() == JsonToken.START_ARRAY && fieldName.equals("features")) {
+                return startFeatures();
+            }
+
+            parser.skipChildren();
+        }
+
+        // a FeatureCollection without features
+        state = SEQUENCE;
+        return null;
+    }
+
+    private T startFeatures() {
+        state = ARRAY;
+        inFeatureCollection = true;
+        return null;
+    }
+
+    private T readArrayElement() throws IOException {
+        JsonToken token = parser.nextToken();
+
+        if (token == null) {
+            state = DONE;
+            return null;
+        } else if (token == JsonToken.END_ARRAY) {
+            if (inFeatureCollection) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    parser.nextToken();
+                    parser.skipChildren();
+                }
+            }
+
+            state = DONE;
+            return null;
+        }
+
+        return mapper.readValue(parser, type);
+    }
+
+    private T readSequenceElement() throws IOException {
+        if (parser.nextToken() == null) {
+            state = DONE;
+            return null;
+        }
+
+        return mapper.readValue(parser, type);
+    }
+
+    @Override
+    public void close() throws IOException {
+        state = DONE;
+        parser.close();
+    }
+}
@@ -0,0 +1,63 @@
+package org.postgis.geojson.stream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes values one at a time to a stream of GeoJSON, either as the "features"
+ * of a FeatureCollection or as a plain JSON array.
+ *
+ * Every value is flushed as soon as it is written, so a slow consumer of the
+ * output blocks the writer instead of piling up buffered values. Values are
+ * written with the given mapper, so it must have a
+ * {@link org.postgis.geojson.PostGISModule} registered to write geometries.
+ */
+public class GeoJsonWriter implements Closeable, Flushable {
+    private final ObjectMapper mapper;
+    private final JsonGenerator generator;
+    private final boolean featureCollection;
+
+    public GeoJsonWriter(ObjectMapper mapper, OutputStream out, boolean featureCollection) throws IOException {
+        this.mapper = mapper;
+        this.generator = mapper.getFactory().createGenerator(out);
+        this.featureCollection = featureCollection;
+
+        if (featureCollection) {
+            generator.writeStartObject();
+            generator.writeStringField("type", "FeatureCollection");
+            generator.writeArrayFieldStart("features");
+        } else {
+            generator.writeStartArray();
+        }
+    }
+
+    public void write(Object value) throws IOException {
+        mapper.writeValue(generator, value);
+        generator.flush();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        generator.flush();
+    }
+
+    /**
+     * Ends the array, or the FeatureCollection, and closes the output.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            generator.writeEndArray();
+
+            if (featureCollection) {
+                generator.writeEndObject();
+            }
+        } finally {
+            generator.close();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.postgis.geojson.util;
+
+/**
+ * Kernels over packed coordinate arrays, laid out as in {@link GeometryBuilder}:
+ * <code>x, y[, z[, m]]</code> per vertex, <code>vertices</code> vertices starting
+ * at <code>offset</code>. The transforming kernels work in place and only touch
+ * x and y.
+ *
+ * This is the baseline, scalar implementation. On Java 21 and later the
+ * multi-release jar replaces it with one that uses the Vector API when the
+ * <code>jdk.incubator.vector</code> module is available, with the same results.
+ */
+public final class CoordinateKernels {
+    public static final int MAX_DECIMALS = ScalarKernels.MAX_DECIMALS;
+
+    private CoordinateKernels() {
+    }
+
+    /**
+     * @return true if the kernels run vectorized
+     */
+    public static boolean isVectorized() {
+        return false;
+    }
+
+    /**
+     * Computes the bounding box of the vertices, in GeoJSON order: the minimum
+     * of each component followed by the maximum of each component. With no
+     * vertices the minimums are positive infinity and the maximums negative infinity.
+     */
+    public static double[] bbox(double[] coordinates, int offset, int vertices, int dimension) {
+        ScalarKernels.checkRange(coordinates, offset, vertices, dimension);
+
+        double[] box = ScalarKernels.emptyBox(dimension);
+        ScalarKernels.bbox(coordinates, offset, offset + vertices * dimension, dimension, box);
+        return box;
+    }
+
+    /**
+     * Scales and then translates x and y.
+     */
+    public static void transform(double[] coordinates, int offset, int vertices, int dimension,
+            double scaleX, double scaleY, double translateX, double translateY) {
+        ScalarKernels.checkRange(coordinates, offset, vertices, dimension);
+        ScalarKernels.transform(coordinates, offset, offset + vertices * dimension, dimension,
+                scaleX, scaleY, translateX, translateY);
+    }
+
+    /**
+     * Snaps x and y to the nearest node of a grid with the given origin and
+     * resolution, ties going to the even node.
+     */
+    public static void quantize(double[] coordinates, int offset, int vertices, int dimension,
+            double originX, double originY, double resolution) {
+        ScalarKernels.checkRange(coordinates, offset, vertices, dimension);
+        ScalarKernels.quantize(coordinates, offset, offset + vertices * dimension, dimension,
+                originX, originY, resolution);
+    }
+
+    /**
+     * Rounds every component to the given number of decimals, so that they are
+     * written with at most that many digits after the decimal point.
+     */
+    public static void round(double[] coordinates, int offset, int vertices, int dimension, int decimals) {
+        ScalarKernels.checkRange(coordinates, offset, vertices, dimension);
+        ScalarKernels.checkDecimals(decimals);
+        ScalarKernels.round(coordinates, offset, offset + vertices * dimension, Math.pow(10, decimals));
+    }
+}
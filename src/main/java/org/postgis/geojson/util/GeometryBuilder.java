@@ -1,21 +1,26 @@
 package org.postgis.geojson.util;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.DoubleBuffer;
 
 import org.postgis.*;
 
+/**
+ * Factories for PostGIS geometries.
+ *
+ * Besides the single point helpers, every geometry type can be built in bulk
+ * from flat coordinate arrays: <code>x, y[, z[, m]]</code> per vertex, packed
+ * one vertex after the other, at the given dimension. Geometries with more than
+ * one ring or part take offset arrays holding the index of the first vertex of
+ * each ring or part, the last one ending where the coordinates (or the next
+ * geometry) end. Arrays are always allocated at their exact size.
+ *
+ * @author Maycon Viana Bordin <mayconbordin@gmail.com>
+ */
 public class GeometryBuilder {
     public static final int DEFAULT_SRID = 4326;
 
     public static Point[] createPoints(double[] points) {
-        List<Point> result = new ArrayList<Point>();
-
-        for (int i=0; i<points.length; i+=2) {
-            result.add(new Point(points[i], points[i+1]));
-        }
-
-        return (Point[]) result.toArray();
+        return createPoints(DoubleBuffer.wrap(points), 0, points.length / 2, 2);
     }
 
     public static Polygon createPolygon(Point[] points) {
@@ -53,4 +58,186 @@ public class GeometryBuilder {
         point.setSrid(srid);
         return point;
     }
+
+    // Bulk factories from flat double[] coordinates
+
+    public static Point[] createPoints(double[] coordinates, int dimension) {
+        return createPoints(DoubleBuffer.wrap(coordinates), dimension);
+    }
+
+    public static LineString createLineString(double[] coordinates, int dimension, int srid) {
+        return createLineString(DoubleBuffer.wrap(coordinates), dimension, srid);
+    }
+
+    public static LinearRing createLinearRing(double[] coordinates, int dimension, int srid) {
+        return createLinearRing(DoubleBuffer.wrap(coordinates), dimension, srid);
+    }
+
+    public static Polygon createPolygon(double[] coordinates, int[] ringOffsets, int dimension, int srid) {
+        return createPolygon(DoubleBuffer.wrap(coordinates), ringOffsets, dimension, srid);
+    }
+
+    public static MultiPoint createMultiPoint(double[] coordinates, int dimension, int srid) {
+        return createMultiPoint(DoubleBuffer.wrap(coordinates), dimension, srid);
+    }
+
+    public static MultiLineString createMultiLineString(double[] coordinates, int[] partOffsets,
+            int dimension, int srid) {
+        return createMultiLineString(DoubleBuffer.wrap(coordinates), partOffsets, dimension, srid);
+    }
+
+    public static MultiPolygon createMultiPolygon(double[] coordinates, int[] ringOffsets,
+            int[] polygonOffsets, int dimension, int srid) {
+        return createMultiPolygon(DoubleBuffer.wrap(coordinates), ringOffsets, polygonOffsets, dimension, srid);
+    }
+
+    // Bulk factories from DoubleBuffer coordinates, read from position() to limit()
+
+    public static Point[] createPoints(DoubleBuffer coordinates, int dimension) {
+        return createPoints(coordinates, 0, countVertices(coordinates, dimension), dimension);
+    }
+
+    public static LineString createLineString(DoubleBuffer coordinates, int dimension, int srid) {
+        LineString result = new LineString(createPoints(coordinates, dimension));
+        result.setSrid(srid);
+        return result;
+    }
+
+    public static LinearRing createLinearRing(DoubleBuffer coordinates, int dimension, int srid) {
+        LinearRing result = new LinearRing(createPoints(coordinates, dimension));
+        result.setSrid(srid);
+        return result;
+    }
+
+    /**
+     * @param ringOffsets index of the first vertex of each ring, the first one being the exterior ring
+     */
+    public static Polygon createPolygon(DoubleBuffer coordinates, int[] ringOffsets, int dimension, int srid) {
+        int vertices = countVertices(coordinates, dimension);
+        Polygon result = createPolygon(coordinates, ringOffsets, 0, ringOffsets.length, vertices, dimension);
+        result.setSrid(srid);
+        return result;
+    }
+
+    public static MultiPoint createMultiPoint(DoubleBuffer coordinates, int dimension, int srid) {
+        MultiPoint result = new MultiPoint(createPoints(coordinates, dimension));
+        result.setSrid(srid);
+        return result;
+    }
+
+    /**
+     * @param partOffsets index of the first vertex of each line
+     */
+    public static MultiLineString createMultiLineString(DoubleBuffer coordinates, int[] partOffsets,
+            int dimension, int srid) {
+        int vertices = countVertices(coordinates, dimension);
+        LineString[] lines = new LineString[partOffsets.length];
+
+        for (int i=0; i<lines.length; i++) {
+            int start = partOffsets[i];
+            int end = i + 1 < partOffsets.length ? partOffsets[i + 1] : vertices;
+            lines[i] = new LineString(createPoints(coordinates, start, end - start, dimension));
+        }
+
+        MultiLineString result = new MultiLineString(lines);
+        result.setSrid(srid);
+        return result;
+    }
+
+    /**
+     * @param ringOffsets    index of the first vertex of each ring, over all polygons
+     * @param polygonOffsets index in <code>ringOffsets</code> of the exterior ring of each polygon
+     */
+    public static MultiPolygon createMultiPolygon(DoubleBuffer coordinates, int[] ringOffsets,
+            int[] polygonOffsets, int dimension, int srid) {
+        int vertices = countVertices(coordinates, dimension);
+        Polygon[] polygons = new Polygon[polygonOffsets.length];
+
+        for (int i=0; i<polygons.length; i++) {
+            int firstRing = polygonOffsets[i];
+            int lastRing = i + 1 < polygonOffsets.length ? polygonOffsets[i + 1] : ringOffsets.length;
+            int end = lastRing < ringOffsets.length ? ringOffsets[lastRing] : vertices;
+            polygons[i] = createPolygon(coordinates, ringOffsets, firstRing, lastRing, end, dimension);
+        }
+
+        MultiPolygon result = new MultiPolygon(polygons);
+        result.setSrid(srid);
+        return result;
+    }
+
+    public static GeometryCollection createGeometryCollection(Geometry[] geometries, int srid) {
+        GeometryCollection result = new GeometryCollection(geometries);
+        result.setSrid(srid);
+        return result;
+    }
+
+    private static Polygon createPolygon(DoubleBuffer coordinates, int[] ringOffsets, int firstRing,
+            int lastRing, int end, int dimension) {
+        LinearRing[] rings = new LinearRing[lastRing - firstRing];
+
+        for (int i=firstRing; i<lastRing; i++) {
+            int start = ringOffsets[i];
+            int ringEnd = i + 1 < lastRing ? ringOffsets[i + 1] : end;
+            rings[i - firstRing] = new LinearRing(createPoints(coordinates, start, ringEnd - start, dimension));
+        }
+
+        return new Polygon(rings);
+    }
+
+    /**
+     * Reads <code>count</code> vertices starting at vertex <code>start</code>,
+     * relative to the position of the buffer.
+     */
+    private static Point[] createPoints(DoubleBuffer coordinates, int start, int count, int dimension) {
+        checkDimension(dimension);
+
+        if (start < 0 || count < 0 || start + count > countVertices(coordinates, dimension)) {
+            throw new IndexOutOfBoundsException("Vertices [" + start + ", " + (start + count)
+                    + ") out of the coordinates bounds");
+        }
+
+        Point[] points = new Point[count];
+        int index = coordinates.position() + start * dimension;
+
+        switch (dimension) {
+            case 2:
+                for (int i=0; i<count; i++, index+=2) {
+                    points[i] = new Point(coordinates.get(index), coordinates.get(index + 1));
+                }
+                break;
+            case 3:
+                for (int i=0; i<count; i++, index+=3) {
+                    points[i] = new Point(coordinates.get(index), coordinates.get(index + 1),
+                            coordinates.get(index + 2));
+                }
+                break;
+            default:
+                for (int i=0; i<count; i++, index+=4) {
+                    Point point = new Point(coordinates.get(index), coordinates.get(index + 1),
+                            coordinates.get(index + 2));
+                    point.setM(coordinates.get(index + 3));
+                    points[i] = point;
+                }
+                break;
+        }
+
+        return points;
+    }
+
+    private static int countVertices(DoubleBuffer coordinates, int dimension) {
+        checkDimension(dimension);
+
+        if (coordinates.remaining() % dimension != 0) {
+            throw new IllegalArgumentException("Number of coordinates (" + coordinates.remaining()
+                    + ") is not a multiple of the dimension (" + dimension + ")");
+        }
+
+        return coordinates.remaining() / dimension;
+    }
+
+    private static void checkDimension(int dimension) {
+        if (dimension < 2 || dimension > 4) {
+            throw new IllegalArgumentException("Dimension must be 2, 3 or 4, got " + dimension);
+        }
+    }
 }
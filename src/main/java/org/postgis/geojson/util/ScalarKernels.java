@@ -0,0 +1,72 @@
+package org.postgis.geojson.util;
+
+import java.util.Arrays;
+
+/**
+ * Scalar implementation of the {@link CoordinateKernels}, also used for the
+ * tail of the arrays by vectorized implementations. Ranges are given as element
+ * indices, <code>from</code> being the first coordinate of a vertex.
+ */
+final class ScalarKernels {
+    static final int MAX_DECIMALS = 15;
+
+    private ScalarKernels() {
+    }
+
+    static void checkRange(double[] coordinates, int offset, int vertices, int dimension) {
+        if (dimension < 2 || dimension > 4) {
+            throw new IllegalArgumentException("Dimension must be 2, 3 or 4, got " + dimension);
+        }
+
+        if (offset < 0 || vertices < 0 || (long) offset + (long) vertices * dimension > coordinates.length) {
+            throw new IndexOutOfBoundsException("Vertices [" + offset + ", " + offset + " + " + vertices
+                    + " * " + dimension + ") out of the coordinates bounds");
+        }
+    }
+
+    static void checkDecimals(int decimals) {
+        if (decimals < 0 || decimals > MAX_DECIMALS) {
+            throw new IllegalArgumentException("Decimals must be between 0 and " + MAX_DECIMALS
+                    + ", got " + decimals);
+        }
+    }
+
+    static double[] emptyBox(int dimension) {
+        double[] box = new double[dimension * 2];
+        Arrays.fill(box, 0, dimension, Double.POSITIVE_INFINITY);
+        Arrays.fill(box, dimension, box.length, Double.NEGATIVE_INFINITY);
+        return box;
+    }
+
+    static void bbox(double[] c, int from, int to, int dimension, double[] box) {
+        for (int i = from; i < to; i += dimension) {
+            for (int k = 0; k < dimension; k++) {
+                double v = c[i + k];
+                box[k] = Math.min(box[k], v);
+                box[dimension + k] = Math.max(box[dimension + k], v);
+            }
+        }
+    }
+
+    static void transform(double[] c, int from, int to, int dimension,
+            double scaleX, double scaleY, double translateX, double translateY) {
+        for (int i = from; i < to; i += dimension) {
+            c[i]     = c[i] * scaleX + translateX;
+            c[i + 1] = c[i + 1] * scaleY + translateY;
+        }
+    }
+
+    static void quantize(double[] c, int from, int to, int dimension,
+            double originX, double originY, double resolution) {
+        for (int i = from; i < to; i += dimension) {
+            c[i]     = Math.rint((c[i] - originX) / resolution) * resolution + originX;
+            c[i + 1] = Math.rint((c[i + 1] - originY) / resolution) * resolution + originY;
+        }
+    }
+
+    static void round(double[] c, int from, int to, double scale) {
+        for (int i = from; i < to; i++) {
+            c[i] = Math.rint(c[i] * scale) / scale;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.postgis.geojson.util;
+
+/**
+ * Kernels over packed coordinate arrays, laid out as in {@link GeometryBuilder}:
+ * <code>x, y[, z[, m]]</code> per vertex, <code>vertices</code> vertices starting
+ * at <code>offset</code>. The transforming kernels work in place and only touch
+ * x and y.
+ *
+ * This is the Java 21 variant of the multi-release jar. The kernels run on the
+ * Vector API when the <code>jdk.incubator.vector</code> module was added to the
+ * JVM, the preferred vector shape holds more than one double and the
+ * <code>org.postgis.geojson.vectorize</code> system property is not
+ * <code>false</code>. Otherwise they fall back to the scalar loops.
+ */
+public final class CoordinateKernels {
+    public static final int MAX_DECIMALS = ScalarKernels.MAX_DECIMALS;
+
+    private static final boolean VECTORIZED = detectVectorSupport();
+
+    private CoordinateKernels() {
+    }
+
+    private static boolean detectVectorSupport() {
+        if (!Boolean.parseBoolean(System.getProperty("org.postgis.geojson.vectorize", "true"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+
+        try {
+            return VectorKernels.isSupported();
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return true if the kernels run vectorized
+     */
+    public static boolean isVectorized() {
+        return VECTORIZED;
+    }
+
+    /**
+     * Computes the bounding box of the vertices, in GeoJSON order: the minimum
+     * of each component followed by the maximum of each component. With no
+     * vertices the minimums are positive infinity and the maximums negative infinity.
+     */
+    public static double[] bbox(double[] coordinates, int offset, int vertices, int dimension) {
+        ScalarKernels.checkRange(coordinates, offset, vertices, dimension);
+
+        double[] box = ScalarKernels.emptyBox(dimension);
+        int end = offset + vertices * dimension;
+        int from = VECTORIZED ? VectorKernels.bbox(coordinates, offset, end, dimension, box) : offset;
+        ScalarKernels.bbox(coordinates, from, end, dimension, box);
+        return box;
+    }
+
+    /**
+     * Scales and then translates x and y.
+     */
+    public static void transform(double[] coordinates, int offset, int vertices, int dimension,
+            double scaleX, double scaleY, double translateX, double translateY) {
+        ScalarKernels.checkRange(coordinates, offset, vertices, dimension);
+
+        int end = offset + vertices * dimension;
+        int from = VECTORIZED ? VectorKernels.transform(coordinates, offset, end, dimension,
+                scaleX, scaleY, translateX, translateY) : offset;
+        ScalarKernels.transform(coordinates, from, end, dimension, scaleX, scaleY, translateX, translateY);
+    }
+
+    /**
+     * Snaps x and y to the nearest node of a grid with the given origin and
+     * resolution, ties going to the even node.
+     */
+    public static void quantize(double[] coordinates, int offset, int vertices, int dimension,
+            double originX, double originY, double resolution) {
+        ScalarKernels.checkRange(coordinates, offset, vertices, dimension);
+
+        int end = offset + vertices * dimension;
+        int from = VECTORIZED ? VectorKernels.quantize(coordinates, offset, end, dimension,
+                originX, originY, resolution) : offset;
+        ScalarKernels.quantize(coordinates, from, end, dimension, originX, originY, resolution);
+    }
+
+    /**
+     * Rounds every component to the given number of decimals, so that they are
+     * written with at most that many digits after the decimal point.
+     */
+    public static void round(double[] coordinates, int offset, int vertices, int dimension, int decimals) {
+        ScalarKernels.checkRange(coordinates, offset, vertices, dimension);
+        ScalarKernels.checkDecimals(decimals);
+
+        double scale = Math.pow(10, decimals);
+        int end = offset + vertices * dimension;
+        int from = VECTORIZED ? VectorKernels.round(coordinates, offset, end, scale) : offset;
+        ScalarKernels.round(coordinates, from, end, scale);
+    }
+}
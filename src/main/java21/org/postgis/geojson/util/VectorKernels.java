@@ -0,0 +1,228 @@
+package org.postgis.geojson.util;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API implementation of the {@link CoordinateKernels}. Only loaded once
+ * the <code>jdk.incubator.vector</code> module is known to be available.
+ *
+ * Coordinates are interleaved, so the component held by each lane follows a
+ * pattern. Loops are unrolled over six vectors, whose lanes span a whole number
+ * of vertices for every dimension from 2 to 4, so that the same six lane
+ * patterns apply to every block. Each method processes whole blocks and returns
+ * the index where the scalar loop has to take over.
+ *
+ * Results are the same as those of {@link ScalarKernels}: the same operations
+ * are applied in the same order, without fused multiply-adds.
+ */
+final class VectorKernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    private static final int UNROLL = 6;
+    private static final int BLOCK = UNROLL * LANES;
+
+    /** 2^52, from where on every double is an integer */
+    private static final double INTEGER_THRESHOLD = 0x1p52;
+
+    private VectorKernels() {
+    }
+
+    static boolean isSupported() {
+        return LANES >= 2;
+    }
+
+    static int bbox(double[] c, int from, int to, int dimension, double[] box) {
+        int end = blockEnd(from, to);
+
+        if (end == from) {
+            return from;
+        }
+
+        DoubleVector min0 = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+        DoubleVector min1 = min0, min2 = min0, min3 = min0, min4 = min0, min5 = min0;
+        DoubleVector max0 = DoubleVector.broadcast(SPECIES, Double.NEGATIVE_INFINITY);
+        DoubleVector max1 = max0, max2 = max0, max3 = max0, max4 = max0, max5 = max0;
+
+        for (int i = from; i < end; i += BLOCK) {
+            DoubleVector v0 = DoubleVector.fromArray(SPECIES, c, i);
+            DoubleVector v1 = DoubleVector.fromArray(SPECIES, c, i + LANES);
+            DoubleVector v2 = DoubleVector.fromArray(SPECIES, c, i + 2 * LANES);
+            DoubleVector v3 = DoubleVector.fromArray(SPECIES, c, i + 3 * LANES);
+            DoubleVector v4 = DoubleVector.fromArray(SPECIES, c, i + 4 * LANES);
+            DoubleVector v5 = DoubleVector.fromArray(SPECIES, c, i + 5 * LANES);
+
+            min0 = min0.min(v0); max0 = max0.max(v0);
+            min1 = min1.min(v1); max1 = max1.max(v1);
+            min2 = min2.min(v2); max2 = max2.max(v2);
+            min3 = min3.min(v3); max3 = max3.max(v3);
+            min4 = min4.min(v4); max4 = max4.max(v4);
+            min5 = min5.min(v5); max5 = max5.max(v5);
+        }
+
+        double[] mins = new double[BLOCK];
+        double[] maxs = new double[BLOCK];
+        min0.intoArray(mins, 0);             max0.intoArray(maxs, 0);
+        min1.intoArray(mins, LANES);         max1.intoArray(maxs, LANES);
+        min2.intoArray(mins, 2 * LANES);     max2.intoArray(maxs, 2 * LANES);
+        min3.intoArray(mins, 3 * LANES);     max3.intoArray(maxs, 3 * LANES);
+        min4.intoArray(mins, 4 * LANES);     max4.intoArray(maxs, 4 * LANES);
+        min5.intoArray(mins, 5 * LANES);     max5.intoArray(maxs, 5 * LANES);
+
+        for (int j = 0; j < BLOCK; j++) {
+            int k = j % dimension;
+            box[k] = Math.min(box[k], mins[j]);
+            box[dimension + k] = Math.max(box[dimension + k], maxs[j]);
+        }
+
+        return end;
+    }
+
+    static int transform(double[] c, int from, int to, int dimension,
+            double scaleX, double scaleY, double translateX, double translateY) {
+        int end = blockEnd(from, to);
+
+        if (end == from) {
+            return from;
+        }
+
+        double[] scale = pattern(dimension, scaleX, scaleY);
+        double[] translate = pattern(dimension, translateX, translateY);
+        boolean[] xy = xyPattern(dimension);
+
+        DoubleVector s0 = DoubleVector.fromArray(SPECIES, scale, 0);
+        DoubleVector s1 = DoubleVector.fromArray(SPECIES, scale, LANES);
+        DoubleVector s2 = DoubleVector.fromArray(SPECIES, scale, 2 * LANES);
+        DoubleVector s3 = DoubleVector.fromArray(SPECIES, scale, 3 * LANES);
+        DoubleVector s4 = DoubleVector.fromArray(SPECIES, scale, 4 * LANES);
+        DoubleVector s5 = DoubleVector.fromArray(SPECIES, scale, 5 * LANES);
+        DoubleVector t0 = DoubleVector.fromArray(SPECIES, translate, 0);
+        DoubleVector t1 = DoubleVector.fromArray(SPECIES, translate, LANES);
+        DoubleVector t2 = DoubleVector.fromArray(SPECIES, translate, 2 * LANES);
+        DoubleVector t3 = DoubleVector.fromArray(SPECIES, translate, 3 * LANES);
+        DoubleVector t4 = DoubleVector.fromArray(SPECIES, translate, 4 * LANES);
+        DoubleVector t5 = DoubleVector.fromArray(SPECIES, translate, 5 * LANES);
+        VectorMask<Double> m0 = VectorMask.fromArray(SPECIES, xy, 0);
+        VectorMask<Double> m1 = VectorMask.fromArray(SPECIES, xy, LANES);
+        VectorMask<Double> m2 = VectorMask.fromArray(SPECIES, xy, 2 * LANES);
+        VectorMask<Double> m3 = VectorMask.fromArray(SPECIES, xy, 3 * LANES);
+        VectorMask<Double> m4 = VectorMask.fromArray(SPECIES, xy, 4 * LANES);
+        VectorMask<Double> m5 = VectorMask.fromArray(SPECIES, xy, 5 * LANES);
+
+        for (int i = from; i < end; i += BLOCK) {
+            transform(c, i, s0, t0, m0);
+            transform(c, i + LANES, s1, t1, m1);
+            transform(c, i + 2 * LANES, s2, t2, m2);
+            transform(c, i + 3 * LANES, s3, t3, m3);
+            transform(c, i + 4 * LANES, s4, t4, m4);
+            transform(c, i + 5 * LANES, s5, t5, m5);
+        }
+
+        return end;
+    }
+
+    private static void transform(double[] c, int i, DoubleVector scale, DoubleVector translate,
+            VectorMask<Double> xy) {
+        DoubleVector v = DoubleVector.fromArray(SPECIES, c, i);
+        v.blend(v.mul(scale).add(translate), xy).intoArray(c, i);
+    }
+
+    static int quantize(double[] c, int from, int to, int dimension,
+            double originX, double originY, double resolution) {
+        int end = blockEnd(from, to);
+
+        if (end == from) {
+            return from;
+        }
+
+        double[] origin = pattern(dimension, originX, originY);
+        boolean[] xy = xyPattern(dimension);
+
+        DoubleVector o0 = DoubleVector.fromArray(SPECIES, origin, 0);
+        DoubleVector o1 = DoubleVector.fromArray(SPECIES, origin, LANES);
+        DoubleVector o2 = DoubleVector.fromArray(SPECIES, origin, 2 * LANES);
+        DoubleVector o3 = DoubleVector.fromArray(SPECIES, origin, 3 * LANES);
+        DoubleVector o4 = DoubleVector.fromArray(SPECIES, origin, 4 * LANES);
+        DoubleVector o5 = DoubleVector.fromArray(SPECIES, origin, 5 * LANES);
+        VectorMask<Double> m0 = VectorMask.fromArray(SPECIES, xy, 0);
+        VectorMask<Double> m1 = VectorMask.fromArray(SPECIES, xy, LANES);
+        VectorMask<Double> m2 = VectorMask.fromArray(SPECIES, xy, 2 * LANES);
+        VectorMask<Double> m3 = VectorMask.fromArray(SPECIES, xy, 3 * LANES);
+        VectorMask<Double> m4 = VectorMask.fromArray(SPECIES, xy, 4 * LANES);
+        VectorMask<Double> m5 = VectorMask.fromArray(SPECIES, xy, 5 * LANES);
+
+        for (int i = from; i < end; i += BLOCK) {
+            quantize(c, i, o0, resolution, m0);
+            quantize(c, i + LANES, o1, resolution, m1);
+            quantize(c, i + 2 * LANES, o2, resolution, m2);
+            quantize(c, i + 3 * LANES, o3, resolution, m3);
+            quantize(c, i + 4 * LANES, o4, resolution, m4);
+            quantize(c, i + 5 * LANES, o5, resolution, m5);
+        }
+
+        return end;
+    }
+
+    private static void quantize(double[] c, int i, DoubleVector origin, double resolution,
+            VectorMask<Double> xy) {
+        DoubleVector v = DoubleVector.fromArray(SPECIES, c, i);
+        DoubleVector q = rint(v.sub(origin).div(resolution)).mul(resolution).add(origin);
+        v.blend(q, xy).intoArray(c, i);
+    }
+
+    static int round(double[] c, int from, int to, double scale) {
+        int end = from + (to - from) / LANES * LANES;
+
+        for (int i = from; i < end; i += LANES) {
+            DoubleVector v = DoubleVector.fromArray(SPECIES, c, i);
+            rint(v.mul(scale)).div(scale).intoArray(c, i);
+        }
+
+        return end;
+    }
+
+    /**
+     * Same as {@link Math#rint} on every lane: adding and subtracting 2^52
+     * rounds to the nearest integer, ties to even, and the sign is restored
+     * on zeros.
+     */
+    private static DoubleVector rint(DoubleVector v) {
+        DoubleVector magic = DoubleVector.broadcast(SPECIES, INTEGER_THRESHOLD)
+                .blend(-INTEGER_THRESHOLD, v.lt(0.0));
+        DoubleVector r = v.add(magic).sub(magic);
+        r = r.blend(v.mul(0.0), r.eq(0.0));
+
+        // large values, infinities and NaN are left as they are
+        return v.blend(r, v.abs().lt(INTEGER_THRESHOLD));
+    }
+
+    private static int blockEnd(int from, int to) {
+        return from + (to - from) / BLOCK * BLOCK;
+    }
+
+    /**
+     * @return the value of each lane of a block, x and y getting the given
+     *         values and the other components 0
+     */
+    private static double[] pattern(int dimension, double x, double y) {
+        double[] pattern = new double[BLOCK];
+
+        for (int j = 0; j < BLOCK; j++) {
+            int k = j % dimension;
+            pattern[j] = k == 0 ? x : k == 1 ? y : 0.0;
+        }
+
+        return pattern;
+    }
+
+    private static boolean[] xyPattern(int dimension) {
+        boolean[] pattern = new boolean[BLOCK];
+
+        for (int j = 0; j < BLOCK; j++) {
+            pattern[j] = j % dimension < 2;
+        }
+
+        return pattern;
+    }
+}
@@ -0,0 +1,201 @@
+package org.postgis.geojson.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the values read from a stream of GeoJSON, reading only as many
+ * values as the subscriber has requested.
+ *
+ * Values are read with a {@link GeoJsonReader}, which blocks on the input, on
+ * the given executor. On Java 21 and later a virtual thread per task executor
+ * is the natural choice. The input can only be read once, so the publisher
+ * accepts a single subscriber.
+ */
+public class GeoJsonPublisher<T> implements Flow.Publisher<T> {
+    private final ObjectMapper mapper;
+    private final Class<T> type;
+    private final InputStream in;
+    private final Executor executor;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    public GeoJsonPublisher(ObjectMapper mapper, Class<T> type, InputStream in, Executor executor) {
+        this.mapper = Objects.requireNonNull(mapper);
+        this.type = Objects.requireNonNull(type);
+        this.in = Objects.requireNonNull(in);
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber);
+
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("GeoJsonPublisher accepts a single subscriber."));
+            return;
+        }
+
+        subscriber.onSubscribe(new ReadSubscription(subscriber));
+    }
+
+    /**
+     * Drains the requested values on the executor. Calls to {@link #request}
+     * and {@link #cancel} only schedule a drain, and at most one drain runs at
+     * a time, so the subscriber is signalled serially.
+     */
+    private class ReadSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+        private GeoJsonReader<T> reader;
+
+        ReadSubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Requested " + n + " values, must be positive.");
+            } else {
+                requested.accumulateAndGet(n, (current, add) -> {
+                    long sum = current + add;
+                    return sum < 0 ? Long.MAX_VALUE : sum;
+                });
+            }
+
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    cancelled = true;
+                    closeQuietly();
+                    subscriber.onError(e);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+
+            while (true) {
+                long r = requested.get();
+                long emitted = 0;
+
+                while (emitted != r) {
+                    if (isTerminated()) {
+                        return;
+                    }
+
+                    T value;
+
+                    try {
+                        if (reader == null) {
+                            reader = new GeoJsonReader<>(mapper, type, in);
+                        }
+                        value = reader.read();
+                    } catch (Throwable e) {
+                        terminate();
+                        subscriber.onError(e);
+                        return;
+                    }
+
+                    if (value == null) {
+                        terminate();
+                        subscriber.onComplete();
+                        return;
+                    }
+
+                    try {
+                        subscriber.onNext(value);
+                    } catch (Throwable e) {
+                        // a subscriber throwing from onNext is considered to have cancelled
+                        terminate();
+                        return;
+                    }
+
+                    emitted++;
+                }
+
+                if (isTerminated()) {
+                    return;
+                }
+
+                if (r != Long.MAX_VALUE) {
+                    requested.addAndGet(-emitted);
+                }
+
+                missed = wip.addAndGet(-missed);
+
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        private boolean isTerminated() {
+            if (cancelled) {
+                closeQuietly();
+                return true;
+            }
+
+            Throwable invalid = invalidRequest;
+
+            if (invalid != null) {
+                terminate();
+                subscriber.onError(invalid);
+                return true;
+            }
+
+            return false;
+        }
+
+        private void terminate() {
+            cancelled = true;
+            closeQuietly();
+        }
+
+        private void closeQuietly() {
+            try {
+                if (reader != null) {
+                    reader.close();
+                } else {
+                    in.close();
+                }
+            } catch (IOException e) {
+                // nothing left to signal it to
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.postgis.geojson.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * Writes the values it receives to a stream of GeoJSON with a
+ * {@link GeoJsonWriter}, requesting the next value only once the previous one
+ * was written out.
+ *
+ * Writes block on the output in the thread signalling the subscriber, so a slow
+ * consumer of the output slows the publisher down instead of values being
+ * buffered. {@link #getCompletion()} completes once the output is closed.
+ */
+public class GeoJsonSubscriber<T> implements Flow.Subscriber<T> {
+    private final ObjectMapper mapper;
+    private final OutputStream out;
+    private final boolean featureCollection;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    private Flow.Subscription subscription;
+    private GeoJsonWriter writer;
+
+    public GeoJsonSubscriber(ObjectMapper mapper, OutputStream out, boolean featureCollection) {
+        this.mapper = Objects.requireNonNull(mapper);
+        this.out = Objects.requireNonNull(out);
+        this.featureCollection = featureCollection;
+    }
+
+    public CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription);
+
+        if (this.subscription != null) {
+            subscription.cancel();
+            return;
+        }
+
+        this.subscription = subscription;
+
+        try {
+            writer = new GeoJsonWriter(mapper, out, featureCollection);
+        } catch (IOException e) {
+            subscription.cancel();
+            fail(e);
+            return;
+        }
+
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(T item) {
+        Objects.requireNonNull(item);
+
+        if (completion.isDone()) {
+            return;
+        }
+
+        try {
+            writer.write(item);
+        } catch (IOException e) {
+            subscription.cancel();
+            fail(e);
+            return;
+        }
+
+        subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        Objects.requireNonNull(throwable);
+        fail(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (completion.isDone()) {
+            return;
+        }
+
+        try {
+            writer.close();
+            completion.complete(null);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Closes the output without ending the JSON, so a failed stream is never
+     * mistaken for a complete one.
+     */
+    private void fail(Throwable throwable) {
+        try {
+            out.close();
+        } catch (IOException e) {
+            throwable.addSuppressed(e);
+        }
+
+        completion.completeExceptionally(throwable);
+    }
+}
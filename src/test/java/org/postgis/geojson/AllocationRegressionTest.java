@@ -0,0 +1,377 @@
+package org.postgis.geojson;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.postgis.Geometry;
+import org.postgis.geojson.deserializers.GeometryInterner;
+import org.postgis.geojson.serializers.GeometrySerializer;
+import org.postgis.geojson.util.CoordinateKernels;
+import org.postgis.geojson.util.GeometryBuilder;
+
+/**
+ * Checks the bytes allocated by serialization and deserialization against the
+ * budgets in <code>allocation-budgets-&lt;java version&gt;.properties</code>.
+ *
+ * Every geometry type is written plainly and clipped to a tile across it, and
+ * read plainly and through an interner, at two sizes: the bytes allocated per
+ * geometry are those of the small one and the difference between the two
+ * gives the bytes allocated per vertex. A measurement fails once it exceeds
+ * its budget by more than the tolerance. The report of the deltas is printed
+ * and written to <code>target/allocation-report.txt</code>.
+ *
+ * Allocations differ between Java versions, so budgets are kept per version
+ * of the Java specification. Without budgets for the running version the
+ * report is still printed, but the test is skipped.
+ *
+ * Running with <code>-Dallocation.update=true</code> writes the measurements
+ * to <code>target/</code> instead of failing, to be copied over the budgets
+ * of the running version once a change in allocations is intended.
+ */
+public class AllocationRegressionTest {
+    private static final String BUDGETS = "allocation-budgets-%s.properties";
+    private static final String REPORT = "target/allocation-report.txt";
+    private static final String DEFAULT_TOLERANCE = "0.10";
+
+    private static final String[] TYPES = {
+        GeometryTypes.POINT, GeometryTypes.LINE_STRING, GeometryTypes.POLYGON,
+        GeometryTypes.MULTI_POINT, GeometryTypes.MULTI_LINE_STRING, GeometryTypes.MULTI_POLYGON,
+        GeometryTypes.GEOMETRY_COLLECTION
+    };
+
+    private static final int SMALL = 16;
+    private static final int LARGE = 1024;
+    private static final int WARMUP_VERTICES = 400000;
+    private static final int MEASURED_VERTICES = 200000;
+    private static final int PARTS = 4;
+
+    // the eastern half of the circles the geometries are made of
+    private static final double[] TILE = {-51.2176, -30.2, -51.1, -29.9};
+
+    private static final OutputStream NULL_OUTPUT = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    protected ObjectMapper mapper;
+    protected ObjectMapper clippingMapper;
+    protected ObjectMapper internMapper;
+    protected com.sun.management.ThreadMXBean threadBean;
+    protected Object sink;
+
+    protected interface Operation {
+        void run() throws Exception;
+    }
+
+    /**
+     * Serialization or deserialization of a geometry type, at both sizes.
+     */
+    protected static class Case {
+        final String name;
+        final Geometry small;
+        final Geometry large;
+        final Operation smallOp;
+        final Operation largeOp;
+
+        Case(String name, Geometry small, Geometry large, Operation smallOp, Operation largeOp) {
+            this.name = name;
+            this.small = small;
+            this.large = large;
+            this.smallOp = smallOp;
+            this.largeOp = largeOp;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        mapper = new ObjectMapper();
+        mapper.registerModule(new PostGISModule());
+
+        clippingMapper = new ObjectMapper();
+        SimpleModule module = new SimpleModule("ClippingModule");
+        module.addSerializer(Geometry.class, new GeometrySerializer(TILE[0], TILE[1], TILE[2], TILE[3], 0));
+        clippingMapper.registerModule(module);
+
+        internMapper = new ObjectMapper();
+        internMapper.registerModule(new PostGISModule().setInterner(new GeometryInterner()));
+    }
+
+    @Test
+    public void testAllocationBudgets() throws Exception {
+        System.out.println("allocationBudgets");
+
+        String budgetsName = String.format(Locale.ROOT, BUDGETS, javaVersion());
+        Properties budgets = new Properties();
+        InputStream in = getClass().getResourceAsStream("/" + budgetsName);
+        boolean hasBudgets = in != null;
+
+        if (hasBudgets) {
+            try {
+                budgets.load(in);
+            } finally {
+                in.close();
+            }
+        }
+
+        String budgetTolerance = budgets.getProperty("tolerance", DEFAULT_TOLERANCE);
+        double tolerance = Double.parseDouble(System.getProperty("allocation.tolerance", budgetTolerance));
+        List<String> report = new ArrayList<>();
+        List<String> failures = new ArrayList<>();
+        Properties measured = new Properties();
+
+        report.add(String.format(Locale.ROOT, "%-52s %12s %12s %8s", "measurement", "bytes", "budget", "delta"));
+
+        List<Case> cases = new ArrayList<>();
+
+        for (String type : TYPES) {
+            Geometry small = createGeometry(type, SMALL);
+            Geometry large = createGeometry(type, LARGE);
+            byte[] smallJson = mapper.writeValueAsBytes(small);
+            byte[] largeJson = mapper.writeValueAsBytes(large);
+
+            cases.add(serializeCase("serialize." + type, mapper, small, large));
+            cases.add(serializeCase("serializeClipped." + type, clippingMapper, small, large));
+            cases.add(deserializeCase("deserialize." + type, mapper, small, large, smallJson, largeJson));
+            cases.add(deserializeCase("deserializeInterned." + type, internMapper, small, large,
+                    smallJson, largeJson));
+        }
+
+        // code shared by the operations must be compiled before the first one
+        // is measured, older JVMs take long enough for it to show otherwise
+        for (Case c : cases) {
+            warmUp(c.smallOp, c.small.numPoints());
+            warmUp(c.largeOp, c.large.numPoints());
+        }
+
+        for (Case c : cases) {
+            check(c, budgets, measured, tolerance, report, failures);
+        }
+
+        writeReport(report);
+
+        if (Boolean.getBoolean("allocation.update")) {
+            measured.setProperty("tolerance", budgetTolerance);
+            writeBudgets(measured, "target/" + budgetsName);
+            return;
+        }
+
+        Assume.assumeTrue("No allocation budgets for Java " + javaVersion(), hasBudgets);
+        assertTrue("Allocation budgets exceeded:\n" + join(failures), failures.isEmpty());
+    }
+
+    protected Case serializeCase(String name, final ObjectMapper mapper, final Geometry small,
+            final Geometry large) {
+        return new Case(name, small, large, new Operation() {
+            @Override
+            public void run() throws Exception {
+                mapper.writeValue(NULL_OUTPUT, small);
+            }
+        }, new Operation() {
+            @Override
+            public void run() throws Exception {
+                mapper.writeValue(NULL_OUTPUT, large);
+            }
+        });
+    }
+
+    protected Case deserializeCase(String name, final ObjectMapper mapper, Geometry small, Geometry large,
+            final byte[] smallJson, final byte[] largeJson) {
+        return new Case(name, small, large, new Operation() {
+            @Override
+            public void run() throws Exception {
+                sink = mapper.readValue(smallJson, Geometry.class);
+            }
+        }, new Operation() {
+            @Override
+            public void run() throws Exception {
+                sink = mapper.readValue(largeJson, Geometry.class);
+            }
+        });
+    }
+
+    protected void check(Case c, Properties budgets, Properties measured, double tolerance, List<String> report,
+            List<String> failures) throws Exception {
+        int smallVertices = c.small.numPoints();
+        int largeVertices = c.large.numPoints();
+        double smallBytes = measure(c.smallOp, smallVertices);
+
+        compare(c.name + ".perGeometry", smallBytes, budgets, measured, tolerance, report, failures);
+
+        if (largeVertices != smallVertices) {
+            double largeBytes = measure(c.largeOp, largeVertices);
+            double perVertex = (largeBytes - smallBytes) / (largeVertices - smallVertices);
+
+            compare(c.name + ".perVertex", perVertex, budgets, measured, tolerance, report, failures);
+        }
+    }
+
+    protected void warmUp(Operation op, int vertices) throws Exception {
+        for (int i = 0, n = WARMUP_VERTICES / vertices; i < n; i++) {
+            op.run();
+        }
+    }
+
+    /**
+     * @return the bytes allocated per operation, after a warmup
+     */
+    protected double measure(Operation op, int vertices) throws Exception {
+        long threadId = Thread.currentThread().getId();
+        warmUp(op, vertices);
+
+        int iterations = Math.max(100, MEASURED_VERTICES / vertices);
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+
+        for (int i = 0; i < iterations; i++) {
+            op.run();
+        }
+
+        long after = threadBean.getThreadAllocatedBytes(threadId);
+        return (double) (after - before) / iterations;
+    }
+
+    protected void compare(String key, double bytes, Properties budgets, Properties measured, double tolerance,
+            List<String> report, List<String> failures) {
+        measured.setProperty(key, String.format(Locale.ROOT, "%.1f", bytes));
+        String budgetValue = budgets.getProperty(key);
+
+        if (budgetValue == null) {
+            failures.add(key + " has no budget, measured " + Math.round(bytes) + " bytes");
+            report.add(String.format(Locale.ROOT, "%-52s %12.1f %12s %8s", key, bytes, "-", "-"));
+            return;
+        }
+
+        double budget = Double.parseDouble(budgetValue);
+        double delta = budget == 0.0 ? (bytes == 0.0 ? 0.0 : 1.0) : (bytes - budget) / budget;
+
+        report.add(String.format(Locale.ROOT, "%-52s %12.1f %12.1f %+7.1f%%", key, bytes, budget, delta * 100));
+
+        // a few bytes of noise are always allowed on near zero budgets
+        if (bytes > budget * (1 + tolerance) + 8) {
+            failures.add(String.format(Locale.ROOT, "%s: %.1f bytes, budget %.1f (%+.1f%%)",
+                    key, bytes, budget, delta * 100));
+        }
+    }
+
+    protected void writeReport(List<String> report) throws IOException {
+        String text = join(report);
+        System.out.print(text);
+
+        File file = new File(REPORT);
+        if (file.getParentFile().isDirectory()) {
+            PrintStream out = new PrintStream(new FileOutputStream(file), false, "UTF-8");
+            try {
+                out.print(text);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    protected void writeBudgets(Properties measured, String fileName) throws IOException {
+        OutputStream out = new FileOutputStream(fileName);
+        try {
+            measured.store(out, "Bytes allocated per geometry and per vertex");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Creates a geometry of the given type with about <code>vertices</code>
+     * vertices, split over a fixed number of parts.
+     */
+    protected Geometry createGeometry(String type, int vertices) {
+        int srid = GeometryBuilder.DEFAULT_SRID;
+
+        switch (type) {
+            case GeometryTypes.POINT:
+                return GeometryBuilder.createPoint(125.6, 10.1);
+            case GeometryTypes.LINE_STRING:
+                return GeometryBuilder.createLineString(circle(vertices, false), 2, srid);
+            case GeometryTypes.POLYGON:
+                return GeometryBuilder.createPolygon(circle(vertices, true), new int[] {0}, 2, srid);
+            case GeometryTypes.MULTI_POINT:
+                return GeometryBuilder.createMultiPoint(circle(vertices, false), 2, srid);
+            case GeometryTypes.MULTI_LINE_STRING:
+                return GeometryBuilder.createMultiLineString(circle(vertices, false), parts(vertices), 2, srid);
+            case GeometryTypes.MULTI_POLYGON:
+                return GeometryBuilder.createMultiPolygon(circle(vertices, false), parts(vertices),
+                        new int[] {0, 1, 2, 3}, 2, srid);
+            default:
+                return GeometryBuilder.createGeometryCollection(new Geometry[] {
+                    GeometryBuilder.createPoint(125.6, 10.1),
+                    GeometryBuilder.createLineString(circle(vertices - 1, false), 2, srid)
+                }, srid);
+        }
+    }
+
+    private static int[] parts(int vertices) {
+        int[] offsets = new int[PARTS];
+
+        for (int i = 0; i < PARTS; i++) {
+            offsets[i] = i * vertices / PARTS;
+        }
+
+        return offsets;
+    }
+
+    /**
+     * @return vertices on a circle, rounded to 6 decimals as GPS data usually
+     *         is, the last one repeating the first if <code>closed</code>
+     */
+    private static double[] circle(int vertices, boolean closed) {
+        double[] coordinates = new double[vertices * 2];
+        int distinct = closed ? vertices - 1 : vertices;
+
+        for (int i = 0; i < vertices; i++) {
+            double angle = 2 * Math.PI * (i % distinct) / distinct;
+            coordinates[i * 2] = -51.2176 + Math.cos(angle) * 0.0731;
+            coordinates[i * 2 + 1] = -30.0346 + Math.sin(angle) * 0.0731;
+        }
+
+        CoordinateKernels.round(coordinates, 0, vertices, 2, 6);
+        return coordinates;
+    }
+
+    /**
+     * @return the major Java version, "8" rather than "1.8"
+     */
+    private static String javaVersion() {
+        String version = System.getProperty("java.specification.version");
+        return version.startsWith("1.") ? version.substring(2) : version;
+    }
+
+    private static String join(List<String> lines) {
+        StringBuilder sb = new StringBuilder();
+
+        for (String line : lines) {
+            sb.append(line).append('\n');
+        }
+
+        return sb.toString();
+    }
+}
@@ -1,5 +1,6 @@
 package org.postgis.geojson.deserializers;
 
+import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import org.junit.Before;
@@ -13,6 +14,7 @@ import org.postgis.MultiPoint;
 import org.postgis.MultiPolygon;
 import org.postgis.Point;
 import org.postgis.Polygon;
+import org.postgis.geojson.PostGISModule;
 
 /**
  *
@@ -192,4 +194,281 @@ public class GeometryDeserializerTest {
         assertEquals(1.0, ((LineString)p.getGeometries()[1]).getPoint(1).getY(), 0);
     }
     
+    @Test
+    public void testDeserializeTypeAfterCoordinates() throws Exception {
+        System.out.println("deserializeTypeAfterCoordinates");
+        
+        String json = "{\"coordinates\": [125.6, 10.1, 5.0], \"bbox\": [125.6, 10.1, 125.6, 10.1], \"type\": \"Point\"}";
+        
+        Point p = (Point) mapper.readValue(json, Geometry.class);
+        
+        assertNotNull(p);
+        assertEquals(125.6, p.getX(), 0);
+        assertEquals(10.1, p.getY(), 0);
+        assertEquals(5.0, p.getZ(), 0);
+    }
+    
+    @Test(expected = JsonParseException.class)
+    public void testDeserializeInconsistentNesting() throws Exception {
+        System.out.println("deserializeInconsistentNesting");
+        
+        String json = "{\"type\": \"LineString\",\"coordinates\": [ [100.0, 0.0], [[101.0, 1.0]] ]}";
+        
+        mapper.readValue(json, Geometry.class);
+    }
+    
+    @Test
+    public void testDeserializeTypeNotString() throws Exception {
+        System.out.println("deserializeTypeNotString");
+        
+        String json = "{\"type\": {\"coordinates\": [1.0, 2.0]},\"coordinates\": [3.0, 4.0]}";
+        
+        try {
+            mapper.readValue(json, Geometry.class);
+            fail("Expected a non string type to be rejected");
+        } catch (JsonParseException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Unexpected START_OBJECT in type"));
+        }
+    }
+    
+    @Test
+    public void testDeserializeMaxCoordinates() throws Exception {
+        System.out.println("deserializeMaxCoordinates");
+        
+        GeometryDeserializer deserializer = new GeometryDeserializer();
+        deserializer.setMaxCoordinates(4);
+        
+        String json = "{\"type\": \"GeometryCollection\",\"geometries\": ["
+                + "{ \"type\": \"MultiPoint\", \"coordinates\": [ [100.0, 0.0], [101.0, 1.0] ] },"
+                + "{ \"type\": \"LineString\", \"coordinates\": [ [101.0, 0.0], [102.0, 1.0], [103.0, 2.0] ] }"
+                + "]}";
+        
+        assertLimitExceeded(deserializer, json, "maximum coordinates of 4", json.indexOf("103.0"));
+    }
+    
+    @Test
+    public void testDeserializeMaxDepth() throws Exception {
+        System.out.println("deserializeMaxDepth");
+        
+        GeometryDeserializer deserializer = new GeometryDeserializer();
+        deserializer.setMaxDepth(2);
+        
+        String json = "{\"type\": \"GeometryCollection\",\"geometries\": ["
+                + "{ \"type\": \"GeometryCollection\", \"geometries\": ["
+                + "{ \"type\": \"GeometryCollection\", \"geometries\": [] }"
+                + "]}]}";
+        
+        assertLimitExceeded(deserializer, json, "maximum nesting depth of 2", json.lastIndexOf("{"));
+    }
+    
+    @Test
+    public void testDeserializeMaxMembers() throws Exception {
+        System.out.println("deserializeMaxMembers");
+        
+        GeometryDeserializer deserializer = new GeometryDeserializer();
+        deserializer.setMaxMembers(1);
+        
+        String json = "{\"type\": \"MultiLineString\",\"coordinates\": "
+                + "[[[100.0, 0.0], [101.0, 0.0]], [[101.0, 1.0], [100.0, 1.0]]]}";
+        
+        assertLimitExceeded(deserializer, json, "maximum members of 1", json.indexOf("[[101.0, 1.0]"));
+    }
+    
+    @Test
+    public void testDeserializeMaxRingSize() throws Exception {
+        System.out.println("deserializeMaxRingSize");
+        
+        GeometryDeserializer deserializer = new GeometryDeserializer();
+        deserializer.setMaxRingSize(4);
+        
+        String json = "{\"type\": \"Polygon\",\"coordinates\": "
+                + "[[[100.0, 0.0], [101.0, 0.0], [101.0, 1.0], [100.0, 1.0], [100.0, 0.0]]]}";
+        
+        assertLimitExceeded(deserializer, json, "maximum ring size of 4", json.lastIndexOf("[100.0, 0.0]"));
+    }
+    
+    @Test
+    public void testDeserializeDecimals() throws Exception {
+        System.out.println("deserializeDecimals");
+        
+        GeometryDeserializer deserializer = new GeometryDeserializer();
+        deserializer.setDecimals(2);
+        
+        ObjectMapper rounding = new ObjectMapper();
+        SimpleModule module = new SimpleModule("RoundingModule");
+        module.addDeserializer(Geometry.class, deserializer);
+        rounding.registerModule(module);
+        
+        // enough vertices for the vectorized kernels to go past their first block
+        StringBuilder json = new StringBuilder("{\"type\": \"LineString\",\"coordinates\": [");
+        
+        for (int i = 0; i < 100; i++) {
+            json.append(i == 0 ? "" : ",").append("[").append(100 + i * 0.001).append(", -1.23456, 7.891]");
+        }
+        
+        LineString ls = (LineString) rounding.readValue(json.append("]}").toString(), Geometry.class);
+        
+        assertEquals(100, ls.numPoints());
+        
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Math.rint((100 + i * 0.001) * 100) / 100, ls.getPoint(i).getX(), 0);
+            assertEquals(-1.23, ls.getPoint(i).getY(), 0);
+            assertEquals(7.89, ls.getPoint(i).getZ(), 0);
+        }
+        
+        Point p = (Point) rounding.readValue("{\"type\": \"Point\",\"coordinates\": [125.678, 10.1]}",
+                Geometry.class);
+        assertEquals(125.68, p.getX(), 0);
+        assertEquals(10.1, p.getY(), 0);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeserializeInvalidDecimals() throws Exception {
+        System.out.println("deserializeInvalidDecimals");
+        
+        new GeometryDeserializer().setDecimals(16);
+    }
+    
+    @Test
+    public void testDeserializeNotInternedByDefault() throws Exception {
+        System.out.println("deserializeNotInternedByDefault");
+        
+        String json = "{\"type\": \"Point\",\"coordinates\": [125.6, 10.1]}";
+        
+        assertNotSame(mapper.readValue(json, Geometry.class), mapper.readValue(json, Geometry.class));
+    }
+    
+    @Test
+    public void testDeserializeInterned() throws Exception {
+        System.out.println("deserializeInterned");
+        
+        ObjectMapper interning = internMapper();
+        
+        String point = "{\"type\": \"Point\",\"coordinates\": [125.6, 10.1]}";
+        String polygons = "{\"type\": \"MultiPolygon\",\"coordinates\": "
+                + "[[[[102.0, 2.0], [103.0, 2.0], [103.0, 3.0], [102.0, 3.0], [102.0, 2.0]]],"
+                + "[[[100.0, 0.0], [101.0, 0.0], [101.0, 1.0], [100.0, 1.0], [100.0, 0.0]],"
+                + "[[100.2, 0.2], [100.8, 0.2], [100.8, 0.8], [100.2, 0.8], [100.2, 0.2]]]]}";
+        
+        Geometry p = interning.readValue(point, Geometry.class);
+        Geometry mp = interning.readValue(polygons, Geometry.class);
+        
+        assertSame(p, interning.readValue(point, Geometry.class));
+        assertSame(mp, interning.readValue(polygons, Geometry.class));
+        assertEquals(2, ((MultiPolygon) mp).numPolygons());
+        assertEquals(2, ((MultiPolygon) mp).getPolygon(1).numRings());
+        assertEquals(100.2, ((MultiPolygon) mp).getPolygon(1).getRing(1).getPoint(0).getX(), 0);
+        
+        // key order does not matter, coordinates and type do
+        assertSame(p, interning.readValue("{\"coordinates\": [125.6, 10.1],\"type\": \"Point\"}", Geometry.class));
+        assertNotSame(p, interning.readValue("{\"type\": \"Point\",\"coordinates\": [125.6, 10.2]}", Geometry.class));
+        assertNotSame(p, interning.readValue("{\"type\": \"MultiPoint\",\"coordinates\": [[125.6, 10.1]]}",
+                Geometry.class));
+    }
+    
+    @Test
+    public void testDeserializeInternedNesting() throws Exception {
+        System.out.println("deserializeInternedNesting");
+        
+        ObjectMapper interning = internMapper();
+        
+        // same positions, split differently
+        String lines = "{\"type\": \"MultiLineString\",\"coordinates\": "
+                + "[[[100.0, 0.0], [101.0, 1.0]], [[102.0, 2.0], [103.0, 3.0]]]}";
+        String split = "{\"type\": \"MultiLineString\",\"coordinates\": "
+                + "[[[100.0, 0.0]], [[101.0, 1.0], [102.0, 2.0], [103.0, 3.0]]]}";
+        
+        MultiLineString mls = (MultiLineString) interning.readValue(lines, Geometry.class);
+        MultiLineString other = (MultiLineString) interning.readValue(split, Geometry.class);
+        
+        assertNotSame(mls, other);
+        assertEquals(1, other.getLine(0).numPoints());
+        assertSame(mls, interning.readValue(lines, Geometry.class));
+    }
+    
+    @Test
+    public void testDeserializeInternedCollectionMembers() throws Exception {
+        System.out.println("deserializeInternedCollectionMembers");
+        
+        ObjectMapper interning = internMapper();
+        
+        String json = "{\"type\": \"GeometryCollection\",\"geometries\": ["
+                + "{\"type\": \"Point\",\"coordinates\": [100.0, 0.0]},"
+                + "{\"type\": \"LineString\",\"coordinates\": [[101.0, 0.0], [102.0, 1.0]]},"
+                + "{\"type\": \"Point\",\"coordinates\": [100.0, 0.0]}]}";
+        
+        GeometryCollection gc = (GeometryCollection) interning.readValue(json, Geometry.class);
+        GeometryCollection again = (GeometryCollection) interning.readValue(json, Geometry.class);
+        
+        assertNotSame(gc, again);
+        assertSame(gc.getSubGeometry(0), gc.getSubGeometry(2));
+        assertSame(gc.getSubGeometry(1), again.getSubGeometry(1));
+    }
+    
+    @Test
+    public void testDeserializeInternedDecimals() throws Exception {
+        System.out.println("deserializeInternedDecimals");
+        
+        ObjectMapper interning = new ObjectMapper();
+        interning.registerModule(new PostGISModule().setDecimals(2).setInterner(new GeometryInterner()));
+        
+        // equal once rounded, so interned together
+        Point p = (Point) interning.readValue("{\"type\": \"Point\",\"coordinates\": [1.001, 2.0]}", Geometry.class);
+        
+        assertSame(p, interning.readValue("{\"type\": \"Point\",\"coordinates\": [1.002, 2.0]}", Geometry.class));
+        assertEquals(1.0, p.getX(), 0);
+        assertNotSame(p, interning.readValue("{\"type\": \"Point\",\"coordinates\": [1.01, 2.0]}", Geometry.class));
+    }
+    
+    @Test
+    public void testInternerCapacity() throws Exception {
+        System.out.println("internerCapacity");
+        
+        assertEquals(1, new GeometryInterner(1).getCapacity());
+        assertEquals(1024, new GeometryInterner(1000).getCapacity());
+        assertEquals(GeometryInterner.DEFAULT_CAPACITY, new GeometryInterner().getCapacity());
+        
+        ObjectMapper interning = internMapper(new GeometryInterner(1));
+        
+        String first = "{\"type\": \"Point\",\"coordinates\": [100.0, 0.0]}";
+        String second = "{\"type\": \"Point\",\"coordinates\": [101.0, 1.0]}";
+        
+        Geometry p = interning.readValue(first, Geometry.class);
+        interning.readValue(second, Geometry.class);
+        
+        assertNotSame(p, interning.readValue(first, Geometry.class));
+    }
+    
+    protected ObjectMapper internMapper() {
+        return internMapper(new GeometryInterner());
+    }
+    
+    protected ObjectMapper internMapper(GeometryInterner interner) {
+        GeometryDeserializer deserializer = new GeometryDeserializer();
+        deserializer.setInterner(interner);
+        
+        ObjectMapper interning = new ObjectMapper();
+        SimpleModule module = new SimpleModule("InterningModule");
+        module.addDeserializer(Geometry.class, deserializer);
+        interning.registerModule(module);
+        return interning;
+    }
+    
+    protected void assertLimitExceeded(GeometryDeserializer deserializer, String json, String message, int offset)
+            throws Exception {
+        ObjectMapper limited = new ObjectMapper();
+        SimpleModule module = new SimpleModule("LimitedModule");
+        module.addDeserializer(Geometry.class, deserializer);
+        limited.registerModule(module);
+        
+        try {
+            limited.readValue(json, Geometry.class);
+            fail("Expected the limit to be exceeded");
+        } catch (JsonParseException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+            assertEquals(1, e.getLocation().getLineNr());
+            assertEquals(offset + 1, e.getLocation().getColumnNr());
+        }
+    }
+    
 }
@@ -158,4 +158,192 @@ public class GeometrySerializerTest {
         JSONAssert.assertEquals(expected, actual, false);
     }
     
+    @Test
+    public void testSerializeClippedLineString() throws Exception {
+        System.out.println("serializeClippedLineString");
+        
+        String expected = "{\"type\": \"LineString\",\"coordinates\": [ [0.0, 5.0, 0.0], [5.0, 5.0, 0.0], [10.0, 5.0, 0.0] ]}";
+        
+        LineString obj = new LineString(new Point[] {
+            new Point(-5.0, 5.0), new Point(5.0, 5.0), new Point(15.0, 5.0)
+        });
+        
+        String actual = clippingMapper(0.0, 0.0, 10.0, 10.0).writeValueAsString(obj);
+        JSONAssert.assertEquals(expected, actual, true);
+    }
+    
+    @Test
+    public void testSerializeClippedLineStringSplit() throws Exception {
+        System.out.println("serializeClippedLineStringSplit");
+        
+        String expected = "{\"type\": \"MultiLineString\",\"coordinates\": "
+                + "[[[0.0, 5.0, 0.0], [5.0, 5.0, 0.0], [5.0, 10.0, 0.0]], [[8.0, 10.0, 0.0], [8.0, 5.0, 0.0]]]}";
+        
+        LineString obj = new LineString(new Point[] {
+            new Point(-5.0, 5.0), new Point(5.0, 5.0), new Point(5.0, 15.0),
+            new Point(8.0, 15.0), new Point(8.0, 5.0)
+        });
+        
+        String actual = clippingMapper(0.0, 0.0, 10.0, 10.0).writeValueAsString(obj);
+        JSONAssert.assertEquals(expected, actual, true);
+    }
+    
+    @Test
+    public void testSerializeClippedPolygon() throws Exception {
+        System.out.println("serializeClippedPolygon");
+
+        String expected = "{\"type\":\"Polygon\",\"coordinates\":"
+                + "[[[5.0,0.0,0.0],[5.0,5.0,0.0],[0.0,5.0,0.0],[0.0,0.0,0.0],[5.0,0.0,0.0]]]}";
+        
+        Polygon obj = new Polygon(new LinearRing[] {
+            new LinearRing(new Point[] {
+                new Point(-5.0, -5.0), new Point(5.0, -5.0), new Point(5.0, 5.0),
+                new Point(-5.0, 5.0), new Point(-5.0, -5.0)
+            }),
+            new LinearRing(new Point[] {
+                new Point(20.0, 20.0), new Point(21.0, 20.0), new Point(21.0, 21.0),
+                new Point(20.0, 20.0)
+            })
+        });
+        
+        String actual = clippingMapper(0.0, 0.0, 10.0, 10.0).writeValueAsString(obj);
+        JSONAssert.assertEquals(expected, actual, true);
+    }
+    
+    @Test
+    public void testSerializeClippedPolygonWithBuffer() throws Exception {
+        System.out.println("serializeClippedPolygonWithBuffer");
+
+        String expected = "{\"type\":\"Polygon\",\"coordinates\":"
+                + "[[[2.0,-1.0,0.0],[2.0,2.0,0.0],[-1.0,2.0,0.0],[-1.0,-1.0,0.0],[2.0,-1.0,0.0]]]}";
+        
+        Polygon obj = GeometryBuilder.createPolygon(new Point[] {
+            new Point(-5.0, -5.0), new Point(2.0, -5.0), new Point(2.0, 2.0),
+            new Point(-5.0, 2.0), new Point(-5.0, -5.0)
+        });
+        
+        String actual = clippingMapper(0.0, 0.0, 10.0, 10.0, 1.0).writeValueAsString(obj);
+        JSONAssert.assertEquals(expected, actual, true);
+    }
+    
+    @Test
+    public void testSerializeClippedMultiPolygon() throws Exception {
+        System.out.println("serializeClippedMultiPolygon");
+
+        String expected = "{\"type\": \"MultiPolygon\",\"coordinates\": "
+                + "[[[[2.0, 2.0, 0.0], [3.0, 2.0, 0.0], [3.0, 3.0, 0.0], [2.0, 3.0, 0.0], [2.0, 2.0, 0.0]]]]}";
+        
+        MultiPolygon obj = new MultiPolygon(new Polygon[] {
+            GeometryBuilder.createPolygon(new Point[] {
+                new Point(2.0, 2.0), new Point(3.0, 2.0), new Point(3.0, 3.0),
+                new Point(2.0, 3.0), new Point(2.0, 2.0)
+            }),
+            GeometryBuilder.createPolygon(new Point[] {
+                new Point(100.0, 0.0), new Point(101.0, 0.0), new Point(101.0, 1.0),
+                new Point(100.0, 1.0), new Point(100.0, 0.0)
+            })
+        });
+        
+        String actual = clippingMapper(0.0, 0.0, 10.0, 10.0).writeValueAsString(obj);
+        JSONAssert.assertEquals(expected, actual, true);
+    }
+    
+    @Test
+    public void testSerializeClippedGeometryCollection() throws Exception {
+        System.out.println("serializeClippedGeometryCollection");
+        
+        String expected = "{\"type\": \"GeometryCollection\",\"geometries\": ["
+                + "{ \"type\": \"Point\", \"coordinates\": [1.0, 1.0, 0.0]}"
+                + "]}";
+        
+        GeometryCollection obj = new GeometryCollection(new Geometry[]{
+            new Point(1.0, 1.0), new Point(100.0, 0.0), new LineString(new Point[] {
+                new Point(101.0, 0.0), new Point(102.0, 1.0)
+            })
+        });
+        
+        String actual = clippingMapper(0.0, 0.0, 10.0, 10.0).writeValueAsString(obj);
+        JSONAssert.assertEquals(expected, actual, true);
+    }
+    
+    @Test
+    public void testSerializeClippedGeometryCollectionEmptyMembers() throws Exception {
+        System.out.println("serializeClippedGeometryCollectionEmptyMembers");
+        
+        String expected = "{\"type\": \"GeometryCollection\",\"geometries\": ["
+                + "{ \"type\": \"Point\", \"coordinates\": [1.0, 1.0, 0.0]}"
+                + "]}";
+        
+        // a U around the tile, its box crossing the tile but not the polygon itself
+        Polygon around = new Polygon(new LinearRing[] {new LinearRing(new Point[] {
+            new Point(-5.0, -5.0), new Point(15.0, -5.0), new Point(15.0, 15.0), new Point(12.0, 15.0),
+            new Point(12.0, -2.0), new Point(-2.0, -2.0), new Point(-2.0, 15.0), new Point(-5.0, 15.0),
+            new Point(-5.0, -5.0)
+        })});
+        
+        GeometryCollection obj = new GeometryCollection(new Geometry[]{
+            new Point(1.0, 1.0), around, new LineString(new Point[] {
+                new Point(-1.0, 11.0), new Point(0.0, 10.0), new Point(-1.0, 9.0)
+            }), new MultiPolygon(new Polygon[] {around}),
+            new GeometryCollection(new Geometry[] {around})
+        });
+        
+        String actual = clippingMapper(0.0, 0.0, 10.0, 10.0).writeValueAsString(obj);
+        JSONAssert.assertEquals(expected, actual, true);
+    }
+    
+    @Test
+    public void testSerializeClippedGeometryCollectionCrossingMembers() throws Exception {
+        System.out.println("serializeClippedGeometryCollectionCrossingMembers");
+        
+        String expected = "{\"type\": \"GeometryCollection\",\"geometries\": ["
+                + "{ \"type\": \"MultiLineString\", \"coordinates\": [[[5.0, 5.0, 0.0], [10.0, 5.0, 0.0]]]},"
+                + "{ \"type\": \"MultiPolygon\", \"coordinates\": "
+                + "[[[[1.0, 1.0, 0.0], [2.0, 1.0, 0.0], [2.0, 2.0, 0.0], [1.0, 1.0, 0.0]]]]},"
+                + "{ \"type\": \"GeometryCollection\", \"geometries\": ["
+                + "{ \"type\": \"LineString\", \"coordinates\": [[5.0, 5.0, 0.0], [10.0, 5.0, 0.0]]}]}"
+                + "]}";
+        
+        LineString crossing = new LineString(new Point[] {new Point(5.0, 5.0), new Point(15.0, 5.0)});
+        LineString outside = new LineString(new Point[] {new Point(20.0, 20.0), new Point(30.0, 30.0)});
+        
+        GeometryCollection obj = new GeometryCollection(new Geometry[]{
+            new MultiLineString(new LineString[] {crossing, outside}),
+            new MultiPolygon(new Polygon[] {
+                new Polygon(new LinearRing[] {new LinearRing(new Point[] {
+                    new Point(1.0, 1.0), new Point(2.0, 1.0), new Point(2.0, 2.0), new Point(1.0, 1.0)
+                })}),
+                new Polygon(new LinearRing[] {new LinearRing(new Point[] {
+                    new Point(20.0, 20.0), new Point(30.0, 20.0), new Point(30.0, 30.0), new Point(20.0, 20.0)
+                })})
+            }),
+            new GeometryCollection(new Geometry[] {crossing, outside})
+        });
+        
+        String actual = clippingMapper(0.0, 0.0, 10.0, 10.0).writeValueAsString(obj);
+        JSONAssert.assertEquals(expected, actual, true);
+    }
+    
+    @Test
+    public void testSerializeClippedPointOutside() throws Exception {
+        System.out.println("serializeClippedPointOutside");
+
+        String expected = "{\"type\": \"Point\",\"coordinates\": []}";
+        
+        String actual = clippingMapper(0.0, 0.0, 10.0, 10.0).writeValueAsString(new Point(125.6, 10.1));
+        JSONAssert.assertEquals(expected, actual, true);
+    }
+    
+    protected ObjectMapper clippingMapper(double minX, double minY, double maxX, double maxY) {
+        return clippingMapper(minX, minY, maxX, maxY, 0.0);
+    }
+    
+    protected ObjectMapper clippingMapper(double minX, double minY, double maxX, double maxY, double buffer) {
+        ObjectMapper clipping = new ObjectMapper();
+        SimpleModule module = new SimpleModule("ClippingModule");
+        module.addSerializer(Geometry.class, new GeometrySerializer(minX, minY, maxX, maxY, buffer));
+        clipping.registerModule(module);
+        return clipping;
+    }
+    
 }
@@ -0,0 +1,195 @@
+package org.postgis.geojson.stream;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.postgis.Geometry;
+import org.postgis.LineString;
+import org.postgis.Point;
+import org.postgis.geojson.PostGISModule;
+
+public class GeoJsonReaderTest {
+    protected ObjectMapper mapper;
+    
+    public static class Feature {
+        public String type;
+        public Geometry geometry;
+        public Map<String, Object> properties;
+    }
+    
+    @Before
+    public void setUp() {
+        mapper = new ObjectMapper();
+        mapper.registerModule(new PostGISModule());
+    }
+    
+    @Test
+    public void testReadArray() throws Exception {
+        System.out.println("readArray");
+        
+        String json = "[{\"type\": \"Point\",\"coordinates\": [125.6, 10.1]}, null,"
+                + "{\"type\": \"LineString\",\"coordinates\": [ [100.0, 0.0], [101.0, 1.0] ]}]";
+        
+        GeoJsonReader<Geometry> reader = reader(json, Geometry.class);
+        
+        Point p = (Point) reader.read();
+        assertEquals(125.6, p.getX(), 0);
+        
+        LineString ls = (LineString) reader.read();
+        assertEquals(2, ls.numPoints());
+        
+        assertNull(reader.read());
+        assertNull(reader.read());
+        reader.close();
+    }
+    
+    @Test
+    public void testReadSequence() throws Exception {
+        System.out.println("readSequence");
+        
+        String json = "{\"type\": \"Point\",\"coordinates\": [125.6, 10.1]}\n"
+                + "{\"type\": \"Point\",\"coordinates\": [100.0, 0.0]}\n";
+        
+        GeoJsonReader<Geometry> reader = reader(json, Geometry.class);
+        
+        assertEquals(125.6, ((Point) reader.read()).getX(), 0);
+        assertEquals(100.0, ((Point) reader.read()).getX(), 0);
+        assertNull(reader.read());
+        reader.close();
+    }
+    
+    @Test
+    public void testReadFeatureCollection() throws Exception {
+        System.out.println("readFeatureCollection");
+        
+        String json = "{\"type\": \"FeatureCollection\", \"features\": ["
+                + "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\",\"coordinates\": [125.6, 10.1]},"
+                + " \"properties\": {\"name\": \"Dinagat Islands\"}},"
+                + "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\",\"coordinates\": [100.0, 0.0]},"
+                + " \"properties\": {\"name\": \"Other\"}}"
+                + "], \"bbox\": [100.0, 0.0, 125.6, 10.1]}";
+        
+        GeoJsonReader<Feature> reader = reader(json, Feature.class);
+        
+        Feature f = reader.read();
+        assertEquals("Feature", f.type);
+        assertEquals("Dinagat Islands", f.properties.get("name"));
+        assertEquals(125.6, ((Point) f.geometry).getX(), 0);
+        
+        f = reader.read();
+        assertEquals("Other", f.properties.get("name"));
+        
+        assertNull(reader.read());
+        reader.close();
+    }
+    
+    @Test
+    public void testReadSingleFeature() throws Exception {
+        System.out.println("readSingleFeature");
+        
+        String json = "{\"type\": \"Feature\", \"properties\": {\"name\": \"Dinagat Islands\"},"
+                + " \"geometry\": {\"type\": \"Point\",\"coordinates\": [125.6, 10.1]}}";
+        
+        GeoJsonReader<Feature> reader = reader(json, Feature.class);
+        
+        Feature f = reader.read();
+        assertEquals("Dinagat Islands", f.properties.get("name"));
+        assertEquals(10.1, ((Point) f.geometry).getY(), 0);
+        
+        assertNull(reader.read());
+        reader.close();
+    }
+    
+    @Test
+    public void testReadFieldsBeforeType() throws Exception {
+        System.out.println("readFieldsBeforeType");
+        
+        String json = "{\"properties\": {\"name\": \"Dinagat Islands\"}, \"type\": \"Feature\","
+                + " \"geometry\": {\"type\": \"Point\",\"coordinates\": [125.6, 10.1]}}\n"
+                + "{\"coordinates\": [100.0, 0.0], \"type\": \"Point\"}";
+        
+        GeoJsonReader<Feature> reader = reader(json, Feature.class);
+        
+        Feature f = reader.read();
+        assertEquals("Feature", f.type);
+        assertEquals("Dinagat Islands", f.properties.get("name"));
+        assertEquals(10.1, ((Point) f.geometry).getY(), 0);
+        reader.close();
+        
+        GeoJsonReader<Geometry> geometries = reader(json.substring(json.indexOf('\n') + 1), Geometry.class);
+        assertEquals(100.0, ((Point) geometries.read()).getX(), 0);
+        assertNull(geometries.read());
+        geometries.close();
+    }
+    
+    @Test
+    public void testReadFeatureCollectionMembersBeforeFeatures() throws Exception {
+        System.out.println("readFeatureCollectionMembersBeforeFeatures");
+        
+        String json = "{\"type\": \"FeatureCollection\", \"bbox\": [100.0, 0.0, 125.6, 10.1],"
+                + " \"crs\": {\"type\": \"name\", \"properties\": {\"name\": \"EPSG:4326\"}},"
+                + " \"features\": [{\"type\": \"Feature\","
+                + " \"geometry\": {\"type\": \"Point\",\"coordinates\": [125.6, 10.1]}}]}";
+        
+        GeoJsonReader<Feature> reader = reader(json, Feature.class);
+        
+        assertEquals(125.6, ((Point) reader.read().geometry).getX(), 0);
+        assertNull(reader.read());
+        reader.close();
+    }
+    
+    @Test
+    public void testReadLimitLocation() throws Exception {
+        System.out.println("readLimitLocation");
+        
+        mapper = new ObjectMapper();
+        mapper.registerModule(new PostGISModule().setMaxCoordinates(2));
+        
+        String json = "{\"type\": \"MultiPoint\",\"coordinates\": [[100.0, 0.0], [101.0, 1.0], [102.0, 2.0]]}";
+        
+        GeoJsonReader<Geometry> reader = reader(json, Geometry.class);
+        
+        try {
+            reader.read();
+            fail("Expected the limit to be exceeded");
+        } catch (JsonParseException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("maximum coordinates of 2"));
+            assertEquals(1, e.getLocation().getLineNr());
+            assertEquals(json.indexOf("102.0") + 1, e.getLocation().getColumnNr());
+        } finally {
+            reader.close();
+        }
+    }
+    
+    @Test
+    public void testReadLimitLocationBeforeType() throws Exception {
+        System.out.println("readLimitLocationBeforeType");
+        
+        mapper = new ObjectMapper();
+        mapper.registerModule(new PostGISModule().setMaxCoordinates(2));
+        
+        String json = "{\"coordinates\": [[100.0, 0.0], [101.0, 1.0], [102.0, 2.0]],\"type\": \"MultiPoint\"}";
+        
+        GeoJsonReader<Geometry> reader = reader(json, Geometry.class);
+        
+        try {
+            reader.read();
+            fail("Expected the limit to be exceeded");
+        } catch (JsonParseException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("maximum coordinates of 2"));
+            assertEquals(1, e.getLocation().getLineNr());
+            assertEquals(json.indexOf("102.0") + 1, e.getLocation().getColumnNr());
+        } finally {
+            reader.close();
+        }
+    }
+    
+    protected <T> GeoJsonReader<T> reader(String json, Class<T> type) throws Exception {
+        return new GeoJsonReader<>(mapper, type, new ByteArrayInputStream(json.getBytes("UTF-8")));
+    }
+    
+}
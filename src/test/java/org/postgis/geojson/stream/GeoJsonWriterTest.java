@@ -0,0 +1,61 @@
+package org.postgis.geojson.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.postgis.Point;
+import org.postgis.geojson.PostGISModule;
+import org.skyscreamer.jsonassert.JSONAssert;
+
+public class GeoJsonWriterTest {
+    protected ObjectMapper mapper;
+    
+    @Before
+    public void setUp() {
+        mapper = new ObjectMapper();
+        mapper.registerModule(new PostGISModule());
+    }
+    
+    @Test
+    public void testWriteArray() throws Exception {
+        System.out.println("writeArray");
+        
+        String expected = "[{\"type\": \"Point\",\"coordinates\": [125.6, 10.1, 0.0]},"
+                + "{\"type\": \"Point\",\"coordinates\": [100.0, 0.0, 0.0]}]";
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GeoJsonWriter writer = new GeoJsonWriter(mapper, out, false);
+        writer.write(new Point(125.6, 10.1));
+        writer.write(new Point(100.0, 0.0));
+        writer.close();
+        
+        JSONAssert.assertEquals(expected, out.toString("UTF-8"), true);
+    }
+    
+    @Test
+    public void testWriteFeatureCollection() throws Exception {
+        System.out.println("writeFeatureCollection");
+        
+        String expected = "{\"type\": \"FeatureCollection\", \"features\": ["
+                + "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\",\"coordinates\": [125.6, 10.1, 0.0]},"
+                + " \"properties\": {\"name\": \"Dinagat Islands\"}}"
+                + "]}";
+        
+        Map<String, Object> feature = new LinkedHashMap<>();
+        feature.put("type", "Feature");
+        feature.put("geometry", new Point(125.6, 10.1));
+        feature.put("properties", Collections.singletonMap("name", "Dinagat Islands"));
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GeoJsonWriter writer = new GeoJsonWriter(mapper, out, true);
+        writer.write(feature);
+        writer.close();
+        
+        JSONAssert.assertEquals(expected, out.toString("UTF-8"), true);
+    }
+    
+}
@@ -0,0 +1,74 @@
+package org.postgis.geojson.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CoordinateKernelsTest {
+    
+    @Test
+    public void testBbox() throws Exception {
+        System.out.println("bbox");
+        
+        double[] coordinates = new double[] {
+            -1.0, 100.0, 0.0, 5.0, 101.0, 1.0, -5.0, 100.5, 0.5, 0.0
+        };
+        
+        assertArrayEquals(new double[] {100.0, 0.0, -5.0, 101.0, 1.0, 5.0},
+                CoordinateKernels.bbox(coordinates, 1, 3, 3), 0.0);
+        assertArrayEquals(new double[] {-5.0, 0.0, 101.0, 100.5},
+                CoordinateKernels.bbox(coordinates, 0, 5, 2), 0.0);
+    }
+    
+    @Test
+    public void testBboxEmpty() throws Exception {
+        System.out.println("bboxEmpty");
+        
+        double[] box = CoordinateKernels.bbox(new double[0], 0, 0, 2);
+        
+        assertEquals(Double.POSITIVE_INFINITY, box[0], 0.0);
+        assertEquals(Double.NEGATIVE_INFINITY, box[2], 0.0);
+    }
+    
+    @Test
+    public void testTransform() throws Exception {
+        System.out.println("transform");
+        
+        double[] coordinates = new double[] {100.0, 0.0, 7.0, 101.0, 1.0, -0.0};
+        
+        CoordinateKernels.transform(coordinates, 0, 2, 3, 2.0, -1.0, 10.0, 20.0);
+        
+        assertArrayEquals(new double[] {210.0, 20.0, 7.0, 212.0, 19.0, -0.0}, coordinates, 0.0);
+        assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(coordinates[5]));
+    }
+    
+    @Test
+    public void testQuantize() throws Exception {
+        System.out.println("quantize");
+        
+        double[] coordinates = new double[] {100.26, 0.74, 101.25, 1.0};
+        
+        CoordinateKernels.quantize(coordinates, 0, 2, 2, 0.0, 0.0, 0.5);
+        
+        assertArrayEquals(new double[] {100.5, 0.5, 101.0, 1.0}, coordinates, 0.0);
+    }
+    
+    @Test
+    public void testRound() throws Exception {
+        System.out.println("round");
+        
+        double[] coordinates = new double[] {125.61234, 10.15, -0.0004, 7.0};
+        
+        CoordinateKernels.round(coordinates, 0, 2, 2, 3);
+        
+        assertArrayEquals(new double[] {125.612, 10.15, -0.0, 7.0}, coordinates, 0.0);
+        assertEquals("125.612", Double.toString(coordinates[0]));
+    }
+    
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBounds() throws Exception {
+        System.out.println("outOfBounds");
+        
+        CoordinateKernels.bbox(new double[] {100.0, 0.0, 101.0}, 0, 2, 2);
+    }
+    
+}
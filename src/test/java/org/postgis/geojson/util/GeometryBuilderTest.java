@@ -0,0 +1,103 @@
+package org.postgis.geojson.util;
+
+import java.nio.DoubleBuffer;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.postgis.LineString;
+import org.postgis.MultiLineString;
+import org.postgis.MultiPolygon;
+import org.postgis.Point;
+import org.postgis.Polygon;
+
+public class GeometryBuilderTest {
+    
+    @Test
+    public void testCreatePoints() throws Exception {
+        System.out.println("createPoints");
+        
+        Point[] points = GeometryBuilder.createPoints(new double[] {100.0, 0.0, 101.0, 1.0});
+        
+        assertEquals(2, points.length);
+        assertEquals(100.0, points[0].getX(), 0.0);
+        assertEquals(0.0, points[0].getY(), 0.0);
+        assertEquals(101.0, points[1].getX(), 0.0);
+        assertEquals(1.0, points[1].getY(), 0.0);
+    }
+    
+    @Test
+    public void testCreateLineString3d() throws Exception {
+        System.out.println("createLineString3d");
+        
+        LineString ls = GeometryBuilder.createLineString(
+                new double[] {100.0, 0.0, 5.0, 101.0, 1.0, 6.0}, 3, 4326);
+        
+        assertEquals(2, ls.numPoints());
+        assertEquals(4326, ls.getSrid());
+        assertEquals(3, ls.getPoint(0).getDimension());
+        assertEquals(5.0, ls.getPoint(0).getZ(), 0.0);
+        assertEquals(101.0, ls.getPoint(1).getX(), 0.0);
+        assertEquals(6.0, ls.getPoint(1).getZ(), 0.0);
+    }
+    
+    @Test
+    public void testCreatePolygonWithHole() throws Exception {
+        System.out.println("createPolygonWithHole");
+        
+        double[] coordinates = new double[] {
+            100.0, 0.0, 101.0, 0.0, 101.0, 1.0, 100.0, 1.0, 100.0, 0.0,
+            100.2, 0.2, 100.8, 0.2, 100.8, 0.8, 100.2, 0.2
+        };
+        
+        Polygon p = GeometryBuilder.createPolygon(coordinates, new int[] {0, 5}, 2, 4326);
+        
+        assertEquals(2, p.numRings());
+        assertEquals(5, p.getRing(0).numPoints());
+        assertEquals(4, p.getRing(1).numPoints());
+        assertEquals(100.2, p.getRing(1).getPoint(0).getX(), 0.0);
+        assertEquals(4326, p.getRing(1).getSrid());
+    }
+    
+    @Test
+    public void testCreateMultiLineString() throws Exception {
+        System.out.println("createMultiLineString");
+        
+        DoubleBuffer coordinates = DoubleBuffer.wrap(new double[] {
+            100.0, 0.0, 101.0, 1.0, 102.0, 2.0, 103.0, 3.0, 104.0, 4.0
+        });
+        
+        MultiLineString p = GeometryBuilder.createMultiLineString(coordinates, new int[] {0, 2}, 2, 4326);
+        
+        assertEquals(2, p.numLines());
+        assertEquals(2, p.getLine(0).numPoints());
+        assertEquals(3, p.getLine(1).numPoints());
+        assertEquals(104.0, p.getLine(1).getPoint(2).getX(), 0.0);
+    }
+    
+    @Test
+    public void testCreateMultiPolygon() throws Exception {
+        System.out.println("createMultiPolygon");
+        
+        double[] coordinates = new double[] {
+            102.0, 2.0, 103.0, 2.0, 103.0, 3.0, 102.0, 3.0, 102.0, 2.0,
+            100.0, 0.0, 101.0, 0.0, 101.0, 1.0, 100.0, 1.0, 100.0, 0.0,
+            100.2, 0.2, 100.8, 0.2, 100.8, 0.8, 100.2, 0.8, 100.2, 0.2
+        };
+        
+        MultiPolygon p = GeometryBuilder.createMultiPolygon(coordinates,
+                new int[] {0, 5, 10}, new int[] {0, 1}, 2, 4326);
+        
+        assertEquals(2, p.numPolygons());
+        assertEquals(1, p.getPolygon(0).numRings());
+        assertEquals(2, p.getPolygon(1).numRings());
+        assertEquals(15, p.numPoints());
+        assertEquals(100.2, p.getPolygon(1).getRing(1).getPoint(0).getX(), 0.0);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreatePointsInvalidDimension() throws Exception {
+        System.out.println("createPointsInvalidDimension");
+        
+        GeometryBuilder.createPoints(new double[] {100.0, 0.0, 101.0}, 2);
+    }
+    
+}
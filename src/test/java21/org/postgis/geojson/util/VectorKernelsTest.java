@@ -0,0 +1,166 @@
+package org.postgis.geojson.util;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Compares the vectorized kernels with the scalar ones, bit for bit, on arrays
+ * spanning many blocks.
+ */
+public class VectorKernelsTest {
+    private static final int[] DIMENSIONS = {2, 3, 4};
+    private static final int[] OFFSETS = {0, 1, 3};
+    private static final int[] VERTICES = {0, 1, 7, 100, 1000, 1001};
+    private static final int ARRAYS = 20;
+
+    private static final double[] SPECIAL = {
+        Double.NaN, 0.0, -0.0, 0.5, -0.5, 2.5, -3.5, 0x1p52, -0x1p52, 0x1p52 + 1, -0x1p52 - 1, 0x1p53 + 2,
+        0x1p60, -0x1p60, 1e300, -1e300, Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE,
+        Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY
+    };
+    
+    private final Random random = new Random(42);
+    
+    @Test
+    public void testVectorized() throws Exception {
+        System.out.println("vectorized");
+        
+        assertTrue("Run with --add-modules jdk.incubator.vector", CoordinateKernels.isVectorized());
+        
+        double[] c = new double[1000];
+        assertTrue(VectorKernels.round(c, 0, c.length, 10.0) > 0);
+    }
+    
+    @Test
+    public void testBbox() throws Exception {
+        System.out.println("bbox");
+        
+        for (int dimension : DIMENSIONS) {
+            for (int offset : OFFSETS) {
+                for (int vertices : VERTICES) {
+                    for (int n = 0; n < ARRAYS; n++) {
+                        double[] c = coordinates(offset, vertices, dimension);
+                        
+                        double[] expected = ScalarKernels.emptyBox(dimension);
+                        ScalarKernels.bbox(c, offset, offset + vertices * dimension, dimension, expected);
+                        
+                        assertBitsEqual(expected, CoordinateKernels.bbox(c, offset, vertices, dimension));
+                    }
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testTransform() throws Exception {
+        System.out.println("transform");
+        
+        for (int dimension : DIMENSIONS) {
+            for (int offset : OFFSETS) {
+                for (int vertices : VERTICES) {
+                    for (int n = 0; n < ARRAYS; n++) {
+                        double[] actual = coordinates(offset, vertices, dimension);
+                        double[] expected = actual.clone();
+                        double scaleX = value(), scaleY = value(), translateX = value(), translateY = value();
+                        
+                        ScalarKernels.transform(expected, offset, offset + vertices * dimension, dimension,
+                                scaleX, scaleY, translateX, translateY);
+                        CoordinateKernels.transform(actual, offset, vertices, dimension,
+                                scaleX, scaleY, translateX, translateY);
+                        
+                        assertBitsEqual(expected, actual);
+                    }
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testQuantize() throws Exception {
+        System.out.println("quantize");
+        
+        double[] resolutions = {1.0, 0.5, 0.001, 3.0};
+        
+        for (int dimension : DIMENSIONS) {
+            for (int offset : OFFSETS) {
+                for (int vertices : VERTICES) {
+                    for (int n = 0; n < ARRAYS; n++) {
+                        double[] actual = coordinates(offset, vertices, dimension);
+                        double[] expected = actual.clone();
+                        double originX = value(), originY = value();
+                        double resolution = resolutions[n % resolutions.length];
+                        
+                        ScalarKernels.quantize(expected, offset, offset + vertices * dimension, dimension,
+                                originX, originY, resolution);
+                        CoordinateKernels.quantize(actual, offset, vertices, dimension,
+                                originX, originY, resolution);
+                        
+                        assertBitsEqual(expected, actual);
+                    }
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testRound() throws Exception {
+        System.out.println("round");
+        
+        for (int dimension : DIMENSIONS) {
+            for (int offset : OFFSETS) {
+                for (int vertices : VERTICES) {
+                    for (int n = 0; n < ARRAYS; n++) {
+                        double[] actual = coordinates(offset, vertices, dimension);
+                        double[] expected = actual.clone();
+                        int decimals = n % (ScalarKernels.MAX_DECIMALS + 1);
+                        
+                        ScalarKernels.round(expected, offset, offset + vertices * dimension, Math.pow(10, decimals));
+                        CoordinateKernels.round(actual, offset, vertices, dimension, decimals);
+                        
+                        assertBitsEqual(expected, actual);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * @return the vertices after <code>offset</code> leading coordinates, followed
+     *         by a few more to check they are left alone
+     */
+    protected double[] coordinates(int offset, int vertices, int dimension) {
+        double[] c = new double[offset + vertices * dimension + 5];
+        
+        for (int i = 0; i < c.length; i++) {
+            c[i] = value();
+        }
+        
+        return c;
+    }
+    
+    protected double value() {
+        switch (random.nextInt(4)) {
+            case 0:
+                return SPECIAL[random.nextInt(SPECIAL.length)];
+            case 1:
+                // ties, for rounding
+                return (random.nextInt(2000) - 1000) / 2.0;
+            default:
+                return (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12) - 3);
+        }
+    }
+    
+    protected void assertBitsEqual(double[] expected, double[] actual) {
+        assertEquals(expected.length, actual.length);
+        
+        for (int i = 0; i < expected.length; i++) {
+            if (Double.doubleToLongBits(expected[i]) != Double.doubleToLongBits(actual[i])) {
+                fail("Differs at " + i + ": expected " + expected[i] + " but was " + actual[i]
+                        + " in " + Arrays.toString(actual));
+            }
+        }
+    }
+    
+}
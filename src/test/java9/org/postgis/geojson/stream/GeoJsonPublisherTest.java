@@ -0,0 +1,258 @@
+package org.postgis.geojson.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.postgis.geojson.PostGISModule;
+
+public class GeoJsonPublisherTest {
+    private static final AtomicInteger created = new AtomicInteger();
+    
+    private static final Executor DIRECT = Runnable::run;
+    
+    protected ObjectMapper mapper;
+    
+    public static class Value {
+        public String name;
+        
+        public Value() {
+            created.incrementAndGet();
+        }
+    }
+    
+    protected static class ClosingInputStream extends FilterInputStream {
+        boolean closed;
+        
+        ClosingInputStream(String json) throws IOException {
+            super(new ByteArrayInputStream(json.getBytes("UTF-8")));
+        }
+        
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+    
+    protected static class RecordingSubscriber<T> implements Flow.Subscriber<T> {
+        final List<T> values = new ArrayList<>();
+        final List<Throwable> errors = new ArrayList<>();
+        final long initialRequest;
+        Flow.Subscription subscription;
+        int completions;
+        
+        RecordingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+        
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+        
+        @Override
+        public void onNext(T item) {
+            values.add(item);
+        }
+        
+        @Override
+        public void onError(Throwable throwable) {
+            errors.add(throwable);
+        }
+        
+        @Override
+        public void onComplete() {
+            completions++;
+        }
+    }
+    
+    @Before
+    public void setUp() {
+        mapper = new ObjectMapper();
+        mapper.registerModule(new PostGISModule());
+        created.set(0);
+    }
+    
+    @Test
+    public void testRequestBoundsReading() throws Exception {
+        System.out.println("requestBoundsReading");
+        
+        GeoJsonPublisher<Value> publisher = publisher(new ClosingInputStream(values(3)), DIRECT);
+        RecordingSubscriber<Value> subscriber = new RecordingSubscriber<>(1);
+        publisher.subscribe(subscriber);
+        
+        assertEquals(1, subscriber.values.size());
+        assertEquals(1, created.get());
+        assertEquals(0, subscriber.completions);
+        
+        subscriber.subscription.request(1);
+        assertEquals(2, subscriber.values.size());
+        assertEquals(2, created.get());
+        
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(3, subscriber.values.size());
+        assertEquals("value 2", subscriber.values.get(2).name);
+        assertEquals(1, subscriber.completions);
+        assertTrue(subscriber.errors.isEmpty());
+    }
+    
+    @Test
+    public void testRequestFromOnNext() throws Exception {
+        System.out.println("requestFromOnNext");
+        
+        final List<Value> values = new ArrayList<>();
+        final AtomicInteger completions = new AtomicInteger();
+        
+        publisher(new ClosingInputStream(values(100)), DIRECT).subscribe(new Flow.Subscriber<Value>() {
+            private Flow.Subscription subscription;
+            
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+            
+            @Override
+            public void onNext(Value item) {
+                values.add(item);
+                subscription.request(1);
+            }
+            
+            @Override
+            public void onError(Throwable throwable) {
+                fail(throwable.toString());
+            }
+            
+            @Override
+            public void onComplete() {
+                completions.incrementAndGet();
+            }
+        });
+        
+        assertEquals(100, values.size());
+        assertEquals(1, completions.get());
+    }
+    
+    @Test
+    public void testCancelClosesInput() throws Exception {
+        System.out.println("cancelClosesInput");
+        
+        ClosingInputStream in = new ClosingInputStream(values(3));
+        RecordingSubscriber<Value> subscriber = new RecordingSubscriber<>(1);
+        publisher(in, DIRECT).subscribe(subscriber);
+        
+        assertEquals(1, subscriber.values.size());
+        assertFalse(in.closed);
+        
+        subscriber.subscription.cancel();
+        assertTrue(in.closed);
+        
+        subscriber.subscription.request(1);
+        assertEquals(1, subscriber.values.size());
+        assertEquals(0, subscriber.completions);
+        assertTrue(subscriber.errors.isEmpty());
+    }
+    
+    @Test
+    public void testInvalidRequest() throws Exception {
+        System.out.println("invalidRequest");
+        
+        ClosingInputStream in = new ClosingInputStream(values(3));
+        RecordingSubscriber<Value> subscriber = new RecordingSubscriber<>(0);
+        publisher(in, DIRECT).subscribe(subscriber);
+        
+        subscriber.subscription.request(0);
+        
+        assertEquals(1, subscriber.errors.size());
+        assertTrue(subscriber.errors.get(0) instanceof IllegalArgumentException);
+        assertTrue(subscriber.values.isEmpty());
+        assertTrue(in.closed);
+        
+        subscriber.subscription.request(1);
+        assertEquals(1, subscriber.errors.size());
+        assertTrue(subscriber.values.isEmpty());
+    }
+    
+    @Test
+    public void testSecondSubscriberRejected() throws Exception {
+        System.out.println("secondSubscriberRejected");
+        
+        GeoJsonPublisher<Value> publisher = publisher(new ClosingInputStream(values(3)), DIRECT);
+        RecordingSubscriber<Value> first = new RecordingSubscriber<>(0);
+        RecordingSubscriber<Value> second = new RecordingSubscriber<>(1);
+        publisher.subscribe(first);
+        publisher.subscribe(second);
+        
+        assertEquals(1, second.errors.size());
+        assertTrue(second.errors.get(0) instanceof IllegalStateException);
+        assertTrue(second.values.isEmpty());
+        
+        first.subscription.request(Long.MAX_VALUE);
+        assertEquals(3, first.values.size());
+        assertEquals(1, first.completions);
+    }
+    
+    @Test
+    public void testExecutorRejection() throws Exception {
+        System.out.println("executorRejection");
+        
+        ClosingInputStream in = new ClosingInputStream(values(3));
+        RecordingSubscriber<Value> subscriber = new RecordingSubscriber<>(1);
+        
+        publisher(in, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException("shut down");
+            }
+        }).subscribe(subscriber);
+        
+        assertEquals(1, subscriber.errors.size());
+        assertTrue(subscriber.errors.get(0) instanceof RejectedExecutionException);
+        assertTrue(subscriber.values.isEmpty());
+        assertTrue(in.closed);
+    }
+    
+    @Test
+    public void testReadError() throws Exception {
+        System.out.println("readError");
+        
+        ClosingInputStream in = new ClosingInputStream("[{\"name\": \"value 0\"}, {\"name\": ");
+        RecordingSubscriber<Value> subscriber = new RecordingSubscriber<>(Long.MAX_VALUE);
+        publisher(in, DIRECT).subscribe(subscriber);
+        
+        assertEquals(1, subscriber.values.size());
+        assertEquals(1, subscriber.errors.size());
+        assertTrue(subscriber.errors.get(0) instanceof IOException);
+        assertEquals(0, subscriber.completions);
+        assertTrue(in.closed);
+    }
+    
+    protected GeoJsonPublisher<Value> publisher(ClosingInputStream in, Executor executor) {
+        return new GeoJsonPublisher<>(mapper, Value.class, in, executor);
+    }
+    
+    protected String values(int count) {
+        StringBuilder json = new StringBuilder("[");
+        
+        for (int i = 0; i < count; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"name\": \"value ").append(i).append("\"}");
+        }
+        
+        return json.append("]").toString();
+    }
+    
+}
@@ -0,0 +1,98 @@
+package org.postgis.geojson.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.postgis.Geometry;
+import org.postgis.geojson.PostGISModule;
+import org.skyscreamer.jsonassert.JSONAssert;
+
+public class GeoJsonSubscriberTest {
+    protected ObjectMapper mapper;
+    protected ExecutorService executor;
+    
+    @Before
+    public void setUp() {
+        mapper = new ObjectMapper();
+        mapper.registerModule(new PostGISModule());
+        executor = Executors.newSingleThreadExecutor();
+    }
+    
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+    
+    @Test
+    public void testRoundTrip() throws Exception {
+        System.out.println("roundTrip");
+        
+        String json = "[{\"type\": \"Point\",\"coordinates\": [125.6, 10.1, 0.0]},"
+                + "{\"type\": \"LineString\",\"coordinates\": [[100.0, 0.0, 0.0], [101.0, 1.0, 0.0]]},"
+                + "{\"type\": \"Point\",\"coordinates\": [100.0, 0.0, 0.0]}]";
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GeoJsonSubscriber<Geometry> subscriber = new GeoJsonSubscriber<>(mapper, out, false);
+        
+        new GeoJsonPublisher<>(mapper, Geometry.class, new ByteArrayInputStream(json.getBytes("UTF-8")), executor)
+                .subscribe(subscriber);
+        
+        subscriber.getCompletion().get(10, TimeUnit.SECONDS);
+        JSONAssert.assertEquals(json, out.toString("UTF-8"), true);
+    }
+    
+    @Test
+    public void testRoundTripFeatureCollection() throws Exception {
+        System.out.println("roundTripFeatureCollection");
+        
+        String json = "{\"type\": \"FeatureCollection\", \"features\": ["
+                + "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\",\"coordinates\": [125.6, 10.1, 0.0]},"
+                + " \"properties\": {\"name\": \"Dinagat Islands\"}},"
+                + "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\",\"coordinates\": [100.0, 0.0, 0.0]},"
+                + " \"properties\": {\"name\": \"Other\"}}"
+                + "]}";
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GeoJsonSubscriber<Object> subscriber = new GeoJsonSubscriber<>(mapper, out, true);
+        
+        new GeoJsonPublisher<>(mapper, Object.class, new ByteArrayInputStream(json.getBytes("UTF-8")), executor)
+                .subscribe(subscriber);
+        
+        subscriber.getCompletion().get(10, TimeUnit.SECONDS);
+        JSONAssert.assertEquals(json, out.toString("UTF-8"), true);
+    }
+    
+    @Test
+    public void testErrorLeavesOutputIncomplete() throws Exception {
+        System.out.println("errorLeavesOutputIncomplete");
+        
+        String json = "[{\"type\": \"Point\",\"coordinates\": [125.6, 10.1, 0.0]}, {\"type\": ";
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GeoJsonSubscriber<Geometry> subscriber = new GeoJsonSubscriber<>(mapper, out, false);
+        
+        new GeoJsonPublisher<>(mapper, Geometry.class, new ByteArrayInputStream(json.getBytes("UTF-8")), executor)
+                .subscribe(subscriber);
+        
+        try {
+            subscriber.getCompletion().get(10, TimeUnit.SECONDS);
+            fail("Expected the stream to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        
+        String written = out.toString("UTF-8");
+        assertTrue(written, written.startsWith("["));
+        assertFalse(written, written.trim().endsWith("]"));
+    }
+    
+}